@@ -23,6 +23,15 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
+    @Value("${rabbitmq.queue.backfill-name:activity.backfill.queue}")
+    private String backfillQueue;
+
+    @Value("${rabbitmq.routing.backfill-key:activity.backfill}")
+    private String backfillRoutingKey;
+
+    @Value("${rabbitmq.wire-format:smile}")
+    private String wireFormat;
+
     /**
      * Creates a durable queue for storing messages.
      * Durable queues survive broker restarts.
@@ -64,12 +73,36 @@ public class RabbitMqConfig {
     }
 
     /**
-     * Configures JSON message converter for RabbitTemplate.
-     * Converts Java objects to JSON when sending messages
-     * and JSON back to Java objects when receiving.
+     * Creates the durable queue of the backfill lane.
+     * Events of historical activities wait here, so they never queue ahead of live ones.
+     */
+    @Bean
+    public Queue activityBackfillQueue() {
+        return new Queue(backfillQueue, true);
+    }
+
+    /**
+     * Binds the backfill queue to the exchange with the backfill routing key.
+     */
+    @Bean
+    public Binding activityBackfillBinding(Queue activityBackfillQueue, DirectExchange activityExchange) {
+        return BindingBuilder
+                .bind(activityBackfillQueue)
+                .to(activityExchange)
+                .with(backfillRoutingKey);
+    }
+
+    /**
+     * Configures the message converter for RabbitTemplate.
+     * Activity events are sent in the compact Smile encoding by default;
+     * set rabbitmq.wire-format=json to fall back to the legacy JSON events,
+     * e.g. while consumers that only understand JSON are still running.
      */
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter activityEventMessageConverter() {
+        if ("json".equalsIgnoreCase(wireFormat)) {
+            return new Jackson2JsonMessageConverter();
+        }
+        return new ActivityEventMessageConverter();
     }
 }
\ No newline at end of file
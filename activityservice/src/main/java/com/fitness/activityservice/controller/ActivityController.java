@@ -1,46 +1,163 @@
 package com.fitness.activityservice.controller;
 
+import com.fitness.activityservice.dto.ActivityChangesResponse;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.IngestReceipt;
+import com.fitness.activityservice.dto.LeaderboardResponse;
+import com.fitness.activityservice.dto.SampleChunkRequest;
+import com.fitness.activityservice.dto.SampleSeriesResponse;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.SampleResolution;
+import com.fitness.activityservice.service.ActivityRollupService;
+import com.fitness.activityservice.service.ActivitySampleService;
 import com.fitness.activityservice.service.ActivityService;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * REST controller for activity-related endpoints.
  * Handles tracking new activities and retrieving activity data.
  * Requires user authentication via X-USER-ID header.
+ * Clients sending "Prefer: respond-async" get 202 Accepted and a status URL instead of the saved activity.
+ * An optional Idempotency-Key header makes retried POSTs return the original activity.
+ * Listing without a range returns the hot tier only; a from/to range reads only the archive months it covers.
+ * Either way a Link header with rel="next" points to the previous range while older archives exist.
  */
 @RestController
 @RequestMapping("/api/activities")
 @AllArgsConstructor
 public class ActivityController {
 
+    private static final String RESPOND_ASYNC = "respond-async";
+
         private ActivityService activityService;
+        private ActivityRollupService activityRollupService;
+        private ActivitySampleService activitySampleService;
 
     @PostMapping
-    public ResponseEntity<ActivityResponse> trackActivity(@RequestBody ActivityRequest request ,@RequestHeader ("X-USER-ID") String userId) {
+    public ResponseEntity<?> trackActivity(@RequestBody ActivityRequest request ,@RequestHeader ("X-USER-ID") String userId,
+                                           @RequestHeader(value = "Prefer", required = false) String prefer,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         if(userId != null){
             request.setUserId(userId);
         }
-        return ResponseEntity.ok(activityService.trackActivity(request));
+        if (prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            return activityService.acceptActivity(request, idempotencyKey)
+                    .<ResponseEntity<?>>map(receipt -> ResponseEntity.accepted()
+                            .location(URI.create("/api/activities/ingest/" + receipt.getActivityId()))
+                            .body(receipt))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "1")
+                            .build());
+        }
+        return ResponseEntity.ok(activityService.trackActivity(request, idempotencyKey));
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<ActivityChangesResponse> getChanges(@RequestHeader ("X-USER-ID") String userId,
+                                                              @RequestParam(required = false) String since) {
+        return ResponseEntity.ok(activityService.getChanges(userId, since));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<ActivityStatsResponse>> getStats(@RequestHeader ("X-USER-ID") String userId,
+                                                                @RequestParam(defaultValue = "week") String granularity,
+                                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(activityService.getStats(userId, granularity, from, to));
+    }
+
+    @GetMapping("/leaderboard")
+    public ResponseEntity<LeaderboardResponse> getLeaderboard(@RequestHeader (value = "X-USER-ID", required = false) String userId,
+                                                              @RequestParam(defaultValue = "week") String period,
+                                                              @RequestParam(defaultValue = "calories") String metric,
+                                                              @RequestParam(required = false) ActivityType type,
+                                                              @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(activityService.getLeaderboard(userId, period, metric, type, Math.max(1, Math.min(limit, 100))));
+    }
+
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<Void> rebuildStats() {
+        return activityRollupService.startRebuild()
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @PostMapping("/{activityId}/samples")
+    public ResponseEntity<Integer> uploadSamples(@PathVariable String activityId,
+                                                 @RequestHeader ("X-USER-ID") String userId,
+                                                 @RequestBody SampleChunkRequest request) {
+        return ResponseEntity.ok(activitySampleService.uploadChunk(activityId, userId, request));
+    }
+
+    @GetMapping("/{activityId}/samples")
+    public ResponseEntity<SampleSeriesResponse> getSamples(@PathVariable String activityId,
+                                                           @RequestHeader ("X-USER-ID") String userId,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                           @RequestParam(required = false) SampleResolution resolution,
+                                                           @RequestParam(defaultValue = "1000") int maxPoints) {
+        return ResponseEntity.ok(activitySampleService.getSamples(activityId, userId, from, to, resolution,
+                Math.min(maxPoints, 10000)));
+    }
+
+    @GetMapping("/ingest/{activityId}")
+    public ResponseEntity<IngestReceipt> getIngestStatus(@PathVariable String activityId) {
+        return ResponseEntity.ok(activityService.getIngestStatus(activityId));
     }
 
     @GetMapping
-    public ResponseEntity<List<ActivityResponse>>getUserActivities(@RequestHeader ("X-USER-ID") String userId) {
-        return ResponseEntity.ok(activityService.getUserActivities(userId));
+    public ResponseEntity<List<ActivityResponse>>getUserActivities(@RequestHeader ("X-USER-ID") String userId,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                   WebRequest webRequest) {
+        String etag = activityService.getUserActivitiesEtag(userId, fields, from, to);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        List<ActivityResponse> activities = activityService.getUserActivities(userId, fields, from, to);
+        LocalDateTime pageStart = from != null ? from : activityService.getHotWindowStart();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        activityService.getOlderPageStart(pageStart).ifPresent(olderStart -> response.header(HttpHeaders.LINK,
+                "<" + UriComponentsBuilder.fromPath("/api/activities")
+                        .queryParamIfPresent("fields", Optional.ofNullable(fields))
+                        .queryParam("from", olderStart)
+                        .queryParam("to", pageStart)
+                        .build()
+                        .toUriString() + ">; rel=\"next\""));
+        return response.body(activities);
     }
 
 
     @GetMapping("/{activityId}")
-    public ResponseEntity<ActivityResponse>getActivity(@PathVariable  String activityId) {
-        return ResponseEntity.ok(activityService.getActivityById(activityId));
+    public ResponseEntity<ActivityResponse>getActivity(@PathVariable  String activityId,
+                                                       @RequestParam(required = false) String fields,
+                                                       WebRequest webRequest) {
+        String etag = activityService.getActivityEtag(activityId, fields);
+        if (etag == null) {
+            return ResponseEntity.ok(activityService.getActivityById(activityId, fields));
+        }
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(activityService.getActivityById(activityId, fields));
     }
 
-
 }
 
 /*
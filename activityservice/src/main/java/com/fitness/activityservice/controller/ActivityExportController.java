@@ -0,0 +1,42 @@
+package com.fitness.activityservice.controller;
+
+import com.fitness.activityservice.dto.ExportManifest;
+import com.fitness.activityservice.service.ActivityExportService;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+
+/**
+ * Admin endpoints for bulk activity exports; the gateway only routes them for the admin role.
+ * Exports run in the background; the returned manifest lists the files written so far.
+ */
+@RestController
+@RequestMapping("/api/activities/exports")
+@AllArgsConstructor
+public class ActivityExportController {
+
+    private ActivityExportService activityExportService;
+
+    @PostMapping
+    public ResponseEntity<ExportManifest> startExport(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        ExportManifest manifest = activityExportService.startExport(from, to);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/activities/exports/" + manifest.getExportId()))
+                .body(manifest);
+    }
+
+    @GetMapping("/{exportId}")
+    public ResponseEntity<ExportManifest> getExport(@PathVariable String exportId) {
+        return ResponseEntity.ok(activityExportService.getExport(exportId));
+    }
+
+    @PostMapping("/{exportId}/resume")
+    public ResponseEntity<ExportManifest> resumeExport(@PathVariable String exportId) {
+        return ResponseEntity.accepted().body(activityExportService.resumeExport(exportId));
+    }
+}
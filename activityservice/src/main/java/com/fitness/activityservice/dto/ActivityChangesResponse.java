@@ -0,0 +1,16 @@
+package com.fitness.activityservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO for delta sync responses.
+ * Carries the activities changed since the client's token and the token to use next time.
+ */
+@Data
+public class ActivityChangesResponse {
+    private List<ActivityResponse> changes;
+    private String nextToken;
+    private boolean hasMore;
+}
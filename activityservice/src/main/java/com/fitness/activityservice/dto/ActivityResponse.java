@@ -1,5 +1,6 @@
 package com.fitness.activityservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fitness.activityservice.model.ActivityType;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -9,8 +10,10 @@ import java.util.Map;
  * DTO for activity data responses.
  * Used to send activity data to clients.
  * Excludes sensitive or unnecessary fields from the Activity entity.
+ * Null fields are omitted so sparse fieldset responses only carry what was requested.
  */
 @Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ActivityResponse {
 
     private String id;
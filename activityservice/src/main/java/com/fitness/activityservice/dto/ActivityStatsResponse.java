@@ -0,0 +1,28 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.ActivityType;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * DTO for one bucket of aggregated activity stats.
+ * Totals cover all activities whose start time falls into the bucket.
+ */
+@Data
+public class ActivityStatsResponse {
+
+    private LocalDate bucketStart;
+    private long caloriesBurned;
+    private long duration;
+    private long sessions;
+    private Map<ActivityType, TypeTotals> byType;
+
+    @Data
+    public static class TypeTotals {
+        private long caloriesBurned;
+        private long duration;
+        private long sessions;
+    }
+}
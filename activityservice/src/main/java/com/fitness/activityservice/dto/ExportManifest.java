@@ -0,0 +1,51 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manifest of a bulk activity export, stored as manifest.json next to the exported files.
+ * Each partition records the files it has finished and the last activity ID they contain,
+ * which is the checkpoint a resumed export continues from.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportManifest {
+    private String exportId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private ExportStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private String[] columns;
+    private List<Partition> partitions = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Partition {
+        private int index;
+        private String collection;
+        private String minId;
+        private String maxId;
+        private String checkpointId;
+        private ExportStatus status;
+        private long rows;
+        private List<ExportFile> files = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ExportFile {
+        private String name;
+        private long rows;
+        private long bytes;
+    }
+}
@@ -0,0 +1,11 @@
+package com.fitness.activityservice.dto;
+
+/**
+ * Enum representing the state of a bulk export or one of its partitions.
+ * FAILED exports can be resumed from their last checkpoint.
+ */
+public enum ExportStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,17 @@
+package com.fitness.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO returned for asynchronous activity ingestion.
+ * Carries the generated activity ID and its current ingest status.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestReceipt {
+    private String activityId;
+    private IngestStatus status;
+}
@@ -0,0 +1,15 @@
+package com.fitness.activityservice.dto;
+
+/**
+ * Enum representing the state of an asynchronously ingested activity.
+ * QUEUED activities are buffered in memory and STORED ones are persisted in MongoDB.
+ * FAILED activities were rejected by MongoDB and will not be stored; the client may send them again.
+ * UNKNOWN activities are neither, for example because they were queued on another instance
+ * or lost in a crash before their batch was flushed.
+ */
+public enum IngestStatus {
+    QUEUED,
+    STORED,
+    FAILED,
+    UNKNOWN
+}
@@ -0,0 +1,36 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.LeaderboardMetric;
+import com.fitness.activityservice.model.RollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO for leaderboard responses.
+ * Contains the top-N entries for a window and the caller's own position.
+ */
+@Data
+public class LeaderboardResponse {
+
+    private RollupGranularity period;
+    private LocalDate windowStart;
+    private LeaderboardMetric metric;
+    private ActivityType type;
+    private long participants;
+    private List<Entry> entries;
+    private Entry caller;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private long rank;
+        private String userId;
+        private long value;
+    }
+}
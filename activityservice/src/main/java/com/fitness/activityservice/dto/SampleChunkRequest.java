@@ -0,0 +1,15 @@
+package com.fitness.activityservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO for a chunked sample upload.
+ * Clients number chunks per activity so a retried chunk is stored only once.
+ */
+@Data
+public class SampleChunkRequest {
+    private int chunkIndex;
+    private List<SamplePoint> samples;
+}
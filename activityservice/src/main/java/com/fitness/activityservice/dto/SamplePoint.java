@@ -0,0 +1,21 @@
+package com.fitness.activityservice.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for a single workout sample.
+ * Used for uploads and, with averaged values, for downsampled query results.
+ */
+@Data
+public class SamplePoint {
+    private LocalDateTime timestamp;
+    private Double heartRate;
+    private Double pace;
+    private Double speed;
+    private Double cadence;
+    private Double latitude;
+    private Double longitude;
+    private Double altitude;
+}
@@ -0,0 +1,17 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.SampleResolution;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO for sample range queries.
+ * Reports which tier served the request alongside the points.
+ */
+@Data
+public class SampleSeriesResponse {
+    private String activityId;
+    private SampleResolution resolution;
+    private List<SamplePoint> points;
+}
@@ -7,6 +7,8 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -19,6 +21,8 @@ import java.util.Map;
  * Includes audit fields for creation and modification timestamps.
  */
 @Document(collection = "activities")
+@CompoundIndex(name = "user_start_idx", def = "{'userId': 1, 'startTime': -1}")
+@CompoundIndex(name = "user_updated_idx", def = "{'userId': 1, 'updatedAt': -1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -31,6 +35,8 @@ public class Activity {
     private ActivityType type;
     private Integer duration;
     private Integer caloriesBurned;
+    /** Indexed on its own for the archive and export jobs, which select by start time across users */
+    @Indexed(name = "start_idx")
     private LocalDateTime startTime;
     @Field("metrics")
     private Map<String, Object> additionalMetrics;
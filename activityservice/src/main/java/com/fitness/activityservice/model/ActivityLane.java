@@ -0,0 +1,12 @@
+package com.fitness.activityservice.model;
+
+/**
+ * Enum representing the lane an activity event travels in to the AI service.
+ * LIVE events belong to workouts that just happened and a user may be waiting for;
+ * BACKFILL events belong to historical workouts, e.g. from a bulk import.
+ * Each lane has its own queue so a backfill cannot delay live recommendations.
+ */
+public enum ActivityLane {
+    LIVE,
+    BACKFILL
+}
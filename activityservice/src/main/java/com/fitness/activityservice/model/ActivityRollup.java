@@ -0,0 +1,53 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Entity class representing pre-aggregated activity totals for one user and time bucket.
+ * Maps to 'activity_rollups' collection in MongoDB.
+ * Documents are keyed by user, granularity and bucket start and updated with $inc
+ * as activities are tracked, so stats queries read one document per bucket.
+ */
+@Document(collection = "activity_rollups")
+@CompoundIndex(name = "user_granularity_bucket_idx", def = "{'userId': 1, 'granularity': 1, 'bucketStart': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityRollup {
+
+    @Id
+    private String id;
+    private String userId;
+    private RollupGranularity granularity;
+    private LocalDate bucketStart;
+    private long caloriesBurned;
+    private long duration;
+    private long sessions;
+    private Map<ActivityType, RollupTotals> byType;
+
+    public static String idOf(String userId, RollupGranularity granularity, LocalDate bucketStart) {
+        return userId + ":" + granularity + ":" + bucketStart;
+    }
+
+    /**
+     * Totals for a single activity type within a bucket.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RollupTotals {
+        private long caloriesBurned;
+        private long duration;
+        private long sessions;
+    }
+}
@@ -0,0 +1,48 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity class representing one raw high-frequency workout sample.
+ * Maps to the 'activity_samples' MongoDB time-series collection, bucketed by
+ * activity and user through the meta field. The meta field also holds the upload chunk,
+ * so the samples of a retried chunk can be replaced.
+ */
+@Document(collection = "activity_samples")
+@TimeSeries(timeField = "timestamp", metaField = "meta", granularity = Granularity.SECONDS)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivitySample {
+
+    @Id
+    private String id;
+    private LocalDateTime timestamp;
+    private Meta meta;
+    private Double heartRate;
+    private Double pace;
+    private Double speed;
+    private Double cadence;
+    private Double latitude;
+    private Double longitude;
+    private Double altitude;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Meta {
+        private String activityId;
+        private String userId;
+        private int chunkIndex;
+    }
+}
@@ -0,0 +1,56 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entity class representing downsampled workout samples for one time bucket.
+ * Maps to 'activity_sample_buckets' collection in MongoDB.
+ * Buckets are keyed by activity, resolution and bucket start and merged with
+ * $inc/$min/$max, so samples of one bucket may arrive in different upload chunks.
+ * The IDs of the chunks merged into a bucket are kept so none is merged twice.
+ */
+@Document(collection = "activity_sample_buckets")
+@CompoundIndex(name = "activity_resolution_bucket_idx", def = "{'activityId': 1, 'resolution': 1, 'bucketStart': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivitySampleBucket {
+
+    @Id
+    private String id;
+    private String activityId;
+    private String userId;
+    private SampleResolution resolution;
+    private LocalDateTime bucketStart;
+    private long samples;
+    private Map<String, MetricStats> metrics;
+    private List<String> chunks;
+
+    public static String idOf(String activityId, SampleResolution resolution, LocalDateTime bucketStart) {
+        return activityId + ":" + resolution + ":" + bucketStart;
+    }
+
+    /**
+     * Aggregate of one metric within a bucket; the average is sum / count.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MetricStats {
+        private double sum;
+        private long count;
+        private double min;
+        private double max;
+    }
+}
@@ -0,0 +1,36 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity class representing a used Idempotency-Key.
+ * Maps to 'idempotency_keys' collection in MongoDB.
+ * The ID combines user and key, so the primary key index enforces one activity per key
+ * across all instances; a TTL index removes records after 24 hours.
+ * A queued record belongs to an asynchronously accepted activity that may not be stored yet.
+ */
+@Document(collection = "idempotency_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    private String id;
+    private String activityId;
+    private String fingerprint;
+    private boolean completed;
+    private boolean queued;
+    @Indexed(name = "idempotency_ttl_idx", expireAfter = "24h")
+    private LocalDateTime createdAt;
+
+}
@@ -0,0 +1,13 @@
+package com.fitness.activityservice.model;
+
+/**
+ * Enum representing the totals a leaderboard can rank users by.
+ */
+public enum LeaderboardMetric {
+    CALORIES,
+    DURATION;
+
+    public static LeaderboardMetric fromString(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,40 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity class representing a pending activity event.
+ * Maps to 'activity_outbox' collection in MongoDB.
+ * Written alongside the activity so the event survives broker outages
+ * and is published later by the outbox relay.
+ */
+@Document(collection = "activity_outbox")
+@CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'createdAt': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    private String id;
+    private String activityId;
+    private String userId;
+    private OutboxStatus status;
+    private ActivityLane lane;
+    private int attempts;
+    private String claimedBy;
+    private LocalDateTime leaseUntil;
+    private LocalDateTime createdAt;
+    /** When the event was sent or discarded; finished events expire by this time */
+    private LocalDateTime sentAt;
+
+}
@@ -0,0 +1,14 @@
+package com.fitness.activityservice.model;
+
+/**
+ * Enum representing the lifecycle of an outbox event.
+ * PENDING events are picked up by the relay, SENT events were confirmed by the broker
+ * and DISCARDED events belong to activities that were never persisted.
+ * FAILED events could not be published within the relay's attempts and need attention.
+ */
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    DISCARDED,
+    FAILED
+}
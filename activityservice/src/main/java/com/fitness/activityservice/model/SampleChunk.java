@@ -0,0 +1,28 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity class recording an ingested sample upload chunk.
+ * Maps to 'activity_sample_chunks' collection in MongoDB.
+ * The ID combines activity and chunk index so retried uploads are detected and skipped.
+ * It is written after the samples and buckets of the chunk, so it only exists for complete uploads.
+ */
+@Document(collection = "activity_sample_chunks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SampleChunk {
+
+    @Id
+    private String id;
+    private int samples;
+    private LocalDateTime receivedAt;
+
+}
@@ -0,0 +1,21 @@
+package com.fitness.activityservice.model;
+
+/**
+ * Enum representing the storage tiers of workout samples.
+ * RAW samples are kept as uploaded, the other tiers hold per-bucket aggregates.
+ */
+public enum SampleResolution {
+    RAW(1),
+    TEN_SECONDS(10),
+    ONE_MINUTE(60);
+
+    private final int seconds;
+
+    SampleResolution(int seconds) {
+        this.seconds = seconds;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+}
@@ -0,0 +1,47 @@
+package com.fitness.activityservice.repository;
+
+import com.fitness.activityservice.model.Activity;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+
+/**
+ * Custom repository fragment for reads that may span the hot 'activities' collection
+ * and the monthly archive collections.
+ */
+public interface ActivityArchiveRepository {
+
+    /**
+     * Finds a user's activities that started in [from, to), reading archive collections
+     * only for the months the range actually covers.
+     */
+    List<Activity> findByUserIdAndStartTimeInRange(String userId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Finds a user's activities in the hot collection only, so the cost does not grow with
+     * their archived history.
+     *
+     * @param fields properties to return, or null for all of them
+     */
+    List<Activity> findHotByUserId(String userId, Collection<String> fields);
+
+    /**
+     * Finds an activity by ID, falling back to the archives when it is no longer hot.
+     */
+    Optional<Activity> findByIdAcrossTiers(String activityId);
+
+    /**
+     * Names of the existing archive collections, oldest month first. The names are cached and
+     * reloaded every {@code activity.archive.names-refresh-seconds}.
+     */
+    NavigableSet<String> findArchiveCollections();
+
+    /**
+     * Adds an archive collection created by this instance to the cached names.
+     */
+    void registerArchiveCollection(String collection);
+
+}
@@ -0,0 +1,131 @@
+package com.fitness.activityservice.repository;
+
+import com.fitness.activityservice.model.Activity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Implementation of {@link ActivityArchiveRepository}.
+ * Archive collections are named 'activities_archive_yyyy_MM' after the month of the
+ * activities' start time; the hot collection is always queried first, and archives are
+ * only consulted when the range reaches back past the hot window.
+ */
+@RequiredArgsConstructor
+public class ActivityArchiveRepositoryImpl implements ActivityArchiveRepository {
+
+    public static final String ARCHIVE_PREFIX = "activities_archive_";
+    private static final DateTimeFormatter ARCHIVE_MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.archive.after-days:365}")
+    private long afterDays;
+    @Value("${activity.archive.names-refresh-seconds:60}")
+    private long namesRefreshSeconds;
+
+    // Listing collections on every read would cost a round trip; new archives appear once a night
+    private volatile NavigableSet<String> archives = new ConcurrentSkipListSet<>();
+    private volatile long archivesLoadedAt;
+
+    public static String archiveCollection(YearMonth month) {
+        return ARCHIVE_PREFIX + month.format(ARCHIVE_MONTH);
+    }
+
+    public static YearMonth archiveMonth(String collection) {
+        return YearMonth.parse(collection.substring(ARCHIVE_PREFIX.length()), ARCHIVE_MONTH);
+    }
+
+    @Override
+    public List<Activity> findByUserIdAndStartTimeInRange(String userId, LocalDateTime from, LocalDateTime to) {
+        Criteria criteria = where("userId").is(userId).and("startTime").gte(from).lt(to);
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "startTime"));
+
+        // Keyed by ID: an activity caught between the archive copy and the hot delete appears in both
+        Map<String, Activity> activities = new LinkedHashMap<>();
+        mongoTemplate.find(query, Activity.class).forEach(activity -> activities.put(activity.getId(), activity));
+
+        if (!from.isBefore(LocalDateTime.now().minusDays(afterDays))) {
+            return new ArrayList<>(activities.values());
+        }
+        Set<String> existing = findArchiveCollections();
+        for (YearMonth month = YearMonth.from(to); !month.isBefore(YearMonth.from(from)); month = month.minusMonths(1)) {
+            String collection = archiveCollection(month);
+            if (existing.contains(collection)) {
+                mongoTemplate.find(Query.of(query), Activity.class, collection)
+                        .forEach(activity -> activities.putIfAbsent(activity.getId(), activity));
+            }
+        }
+
+        List<Activity> result = new ArrayList<>(activities.values());
+        result.sort(Comparator.comparing(Activity::getStartTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        return result;
+    }
+
+    @Override
+    public List<Activity> findHotByUserId(String userId, Collection<String> fields) {
+        Query query = new Query(where("userId").is(userId));
+        if (fields != null) {
+            query.fields().include(fields.toArray(String[]::new));
+        }
+        return mongoTemplate.find(query, Activity.class);
+    }
+
+    @Override
+    public Optional<Activity> findByIdAcrossTiers(String activityId) {
+        Activity hot = mongoTemplate.findById(activityId, Activity.class);
+        if (hot != null) {
+            return Optional.of(hot);
+        }
+        Query byId = new Query(where("_id").is(activityId));
+        for (String collection : findArchiveCollections().descendingSet()) {
+            Activity archived = mongoTemplate.findOne(byId, Activity.class, collection);
+            if (archived != null) {
+                return Optional.of(archived);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public NavigableSet<String> findArchiveCollections() {
+        long now = System.currentTimeMillis();
+        if (now - archivesLoadedAt > TimeUnit.SECONDS.toMillis(namesRefreshSeconds)) {
+            NavigableSet<String> loaded = new ConcurrentSkipListSet<>();
+            for (String name : mongoTemplate.getCollectionNames()) {
+                if (name.startsWith(ARCHIVE_PREFIX)) {
+                    loaded.add(name);
+                }
+            }
+            archives = loaded;
+            archivesLoadedAt = now;
+        }
+        return Collections.unmodifiableNavigableSet(archives);
+    }
+
+    @Override
+    public void registerArchiveCollection(String collection) {
+        archives.add(collection);
+    }
+}
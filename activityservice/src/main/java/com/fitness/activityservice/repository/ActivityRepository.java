@@ -8,8 +8,9 @@ import java.util.List;
 /**
  * MongoDB repository for Activity entities.
  * Provides CRUD operations and custom query methods.
+ * Methods of {@link ActivityArchiveRepository} also read the monthly archive collections.
  */
-public interface ActivityRepository extends MongoRepository<Activity, String> {
+public interface ActivityRepository extends MongoRepository<Activity, String>, ActivityArchiveRepository {
 
     List<Activity> findByUserId(String userId);
 
@@ -0,0 +1,22 @@
+package com.fitness.activityservice.repository;
+
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.RollupGranularity;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * MongoDB repository for ActivityRollup entities.
+ * Provides bucket range queries for the stats endpoint.
+ */
+public interface ActivityRollupRepository extends MongoRepository<ActivityRollup, String> {
+
+    @Query("{ 'userId': ?0, 'granularity': ?1, 'bucketStart': { $gte: ?2, $lte: ?3 } }")
+    List<ActivityRollup> findBuckets(String userId, RollupGranularity granularity,
+                                     LocalDate from, LocalDate to, Sort sort);
+
+}
@@ -0,0 +1,11 @@
+package com.fitness.activityservice.repository;
+
+import com.fitness.activityservice.model.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+/**
+ * MongoDB repository for OutboxEvent entities.
+ * Provides CRUD operations for pending activity events.
+ */
+public interface OutboxEventRepository extends MongoRepository<OutboxEvent, String> {
+}
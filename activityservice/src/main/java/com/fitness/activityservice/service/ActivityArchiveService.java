@@ -0,0 +1,162 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.repository.ActivityArchiveRepositoryImpl;
+import com.fitness.activityservice.repository.ActivityRepository;
+import com.mongodb.client.model.CreateCollectionOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Background job moving activities older than the hot window into monthly archive collections.
+ *
+ * <p>Archive collections are created with a stronger block compressor than the default
+ * snappy, since they are written once and read rarely. Each batch is copied first and
+ * deleted from the hot collection afterwards; a crash in between leaves the activity in
+ * both tiers, which the next run and the tier-spanning reads both tolerate.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityArchiveService {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityRepository activityRepository;
+
+    private final Set<String> knownArchives = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${activity.archive.enabled:true}")
+    private boolean enabled;
+    @Value("${activity.archive.after-days:365}")
+    private long afterDays;
+    @Value("${activity.archive.batch-size:1000}")
+    private int batchSize;
+    @Value("${activity.archive.block-compressor:zstd}")
+    private String blockCompressor;
+
+    @Scheduled(cron = "${activity.archive.cron:0 30 3 * * *}")
+    public void archiveScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archiveOlderThan(LocalDateTime.now().minusDays(afterDays));
+        } catch (Exception e) {
+            log.error("Activity archival failed, remaining activities will be archived on the next run", e);
+        }
+    }
+
+    /**
+     * Moves every activity that started before the cutoff into its monthly archive.
+     *
+     * @return number of activities moved, or -1 if another run is in progress
+     */
+    public long archiveOlderThan(LocalDateTime cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        try {
+            long started = System.currentTimeMillis();
+            long moved = 0;
+            int archived;
+            do {
+                archived = archiveBatch(cutoff);
+                moved += archived;
+            } while (archived == batchSize);
+            if (moved > 0) {
+                log.info("Archived {} activities started before {} in {} ms",
+                        moved, cutoff, System.currentTimeMillis() - started);
+            }
+            return moved;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        Query query = new Query(where("startTime").lt(cutoff))
+                .with(Sort.by("startTime"))
+                .limit(batchSize);
+        List<Activity> activities = mongoTemplate.find(query, Activity.class);
+        if (activities.isEmpty()) {
+            return 0;
+        }
+
+        Map<YearMonth, List<Activity>> byMonth = activities.stream()
+                .collect(Collectors.groupingBy(activity -> YearMonth.from(activity.getStartTime()),
+                        TreeMap::new, Collectors.toList()));
+        byMonth.forEach((month, monthActivities) -> {
+            String collection = ensureArchive(month);
+            insertIgnoringDuplicates(collection, monthActivities);
+        });
+
+        List<String> ids = activities.stream().map(Activity::getId).toList();
+        mongoTemplate.remove(new Query(where("_id").in(ids)), Activity.class);
+        return activities.size();
+    }
+
+    private String ensureArchive(YearMonth month) {
+        String collection = ActivityArchiveRepositoryImpl.archiveCollection(month);
+        if (knownArchives.contains(collection)) {
+            return collection;
+        }
+        if (!mongoTemplate.collectionExists(collection)) {
+            try {
+                mongoTemplate.getDb().createCollection(collection, new CreateCollectionOptions()
+                        .storageEngineOptions(new Document("wiredTiger",
+                                new Document("configString", "block_compressor=" + blockCompressor))));
+            } catch (Exception e) {
+                // Created concurrently by another instance
+                if (!mongoTemplate.collectionExists(collection)) {
+                    throw e;
+                }
+            }
+        }
+        mongoTemplate.indexOps(collection).createIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("startTime", Sort.Direction.DESC)
+                .named("user_start_idx"));
+        knownArchives.add(collection);
+        activityRepository.registerArchiveCollection(collection);
+        return collection;
+    }
+
+    private void insertIgnoringDuplicates(String collection, List<Activity> activities) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Activity.class, collection)
+                    .insert(activities)
+                    .execute();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream()
+                    .allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+        }
+    }
+}
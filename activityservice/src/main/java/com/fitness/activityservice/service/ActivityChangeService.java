@@ -0,0 +1,101 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityChangesResponse;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Service answering delta sync requests for a user's activities.
+ *
+ * <p>The change token is an opaque, URL-safe encoding of the (updatedAt, id) position of the
+ * last activity returned. Changes are read in that order from the {userId, updatedAt} index,
+ * so a sync costs time proportional to the number of changes. Activities modified within the
+ * last {@code activity.changes.settle-ms} are held back until the next sync, which keeps
+ * writes that commit slightly out of timestamp order (several instances, group-commit
+ * batches) from slipping behind a token that has already moved past them.</p>
+ */
+@Service
+@RequiredArgsConstructor
+public class ActivityChangeService {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.changes.page-size:500}")
+    private int pageSize;
+    @Value("${activity.changes.settle-ms:2000}")
+    private long settleMs;
+
+    private record Cursor(LocalDateTime updatedAt, String id) {
+    }
+
+    public ActivityChangesResponse getChanges(String userId, String since,
+                                              Function<Activity, ActivityResponse> mapper) {
+        Cursor cursor = decode(since);
+        LocalDateTime settled = LocalDateTime.now().minusNanos(settleMs * 1_000_000);
+
+        Criteria criteria = where("userId").is(userId).and("updatedAt").lte(settled);
+        if (cursor != null) {
+            criteria = criteria.orOperator(
+                    where("updatedAt").gt(cursor.updatedAt()),
+                    where("updatedAt").is(cursor.updatedAt()).and("_id").gt(cursor.id()));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Order.asc("updatedAt"), Sort.Order.asc("_id")))
+                .limit(pageSize + 1);
+        List<Activity> activities = mongoTemplate.find(query, Activity.class);
+
+        boolean hasMore = activities.size() > pageSize;
+        List<Activity> page = hasMore ? activities.subList(0, pageSize) : activities;
+
+        ActivityChangesResponse response = new ActivityChangesResponse();
+        response.setChanges(page.stream().map(mapper).toList());
+        response.setHasMore(hasMore);
+        if (page.isEmpty()) {
+            response.setNextToken(since);
+        } else {
+            Activity last = page.get(page.size() - 1);
+            response.setNextToken(encode(new Cursor(last.getUpdatedAt(), last.getId())));
+        }
+        return response;
+    }
+
+    private String encode(Cursor cursor) {
+        long millis = cursor.updatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        String raw = millis + ":" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            LocalDateTime updatedAt = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))), ZoneOffset.UTC);
+            return new Cursor(updatedAt, raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid change token");
+        }
+    }
+}
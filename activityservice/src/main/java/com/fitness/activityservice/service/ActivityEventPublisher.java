@@ -0,0 +1,240 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.ActivityLane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous publisher for activity events with correlated publisher confirms.
+ *
+ * <p>Callers get a future that completes once the broker has confirmed the message.
+ * A sender thread drains the queue of pending messages and publishes everything waiting,
+ * up to {@code activity.publisher.batch-size}, on one channel without waiting for confirms,
+ * so an idle publisher sends a single message immediately and a busy one sends in batches
+ * with many confirms outstanding. Nacked, returned and unconfirmed messages are retried with
+ * exponential backoff; at most {@code activity.publisher.max-in-flight} messages are pending,
+ * beyond that {@link #publish} blocks the caller.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+    @Value("${rabbitmq.routing.key}")
+    private String routingKey;
+    @Value("${rabbitmq.routing.backfill-key:activity.backfill}")
+    private String backfillRoutingKey;
+    @Value("${activity.publisher.max-in-flight:1000}")
+    private int maxInFlight;
+    @Value("${activity.publisher.batch-size:100}")
+    private int batchSize;
+    @Value("${activity.publisher.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+    @Value("${activity.publisher.max-attempts:3}")
+    private int maxAttempts;
+    @Value("${activity.publisher.retry-delay-ms:200}")
+    private long retryDelayMs;
+
+    private final BlockingQueue<PendingMessage> outgoing = new LinkedBlockingQueue<>();
+    private Semaphore inFlight;
+    private ScheduledExecutorService retryScheduler;
+    private Thread sender;
+    private volatile boolean running;
+
+    private Counter published;
+    private Counter confirmed;
+    private Counter nacked;
+    private Counter retried;
+    private Counter failed;
+    private Timer confirmLatency;
+
+    @PostConstruct
+    void start() {
+        inFlight = new Semaphore(maxInFlight);
+        Gauge.builder("activity.events.publish.in-flight", () -> maxInFlight - inFlight.availablePermits())
+                .description("Activity events published or queued but not yet confirmed")
+                .register(meterRegistry);
+        published = Counter.builder("activity.events.publish.sent").register(meterRegistry);
+        confirmed = Counter.builder("activity.events.publish.confirmed").register(meterRegistry);
+        nacked = Counter.builder("activity.events.publish.nacked")
+                .description("Publishes nacked, returned or not confirmed in time").register(meterRegistry);
+        retried = Counter.builder("activity.events.publish.retried").register(meterRegistry);
+        failed = Counter.builder("activity.events.publish.failed")
+                .description("Events given up after all attempts").register(meterRegistry);
+        confirmLatency = Timer.builder("activity.events.publish.confirm-latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "activity-publisher-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        sender = new Thread(this::sendLoop, "activity-publisher");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        sender.interrupt();
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+        retryScheduler.shutdownNow();
+        List<PendingMessage> unsent = new ArrayList<>();
+        outgoing.drainTo(unsent);
+        unsent.forEach(message -> giveUp(message, new IllegalStateException("Publisher stopped")));
+    }
+
+    /**
+     * Queues an event for publishing.
+     *
+     * @param messageId stable ID of the event, used to correlate confirms
+     * @param lane lane of the event; events without one are live
+     * @return a future completed when the broker confirms the event, or failed after all attempts
+     */
+    public CompletableFuture<Void> publish(String messageId, Object event, ActivityLane lane) throws InterruptedException {
+        inFlight.acquire();
+        PendingMessage message = new PendingMessage(messageId, event,
+                lane == ActivityLane.BACKFILL ? backfillRoutingKey : routingKey);
+        outgoing.add(message);
+        return message.result;
+    }
+
+    /**
+     * Longest time an event can take from being sent until its future completes: every attempt
+     * waits for its confirm and the retries wait their backoff in between.
+     */
+    public long deliveryBudgetMs() {
+        long budget = maxAttempts * confirmTimeoutMs;
+        for (int attempt = 1; attempt < maxAttempts; attempt++) {
+            budget += retryDelayMs << (attempt - 1);
+        }
+        return budget;
+    }
+
+    private void sendLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(outgoing.take());
+                outgoing.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Activity event publisher failed to send a batch", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<PendingMessage> batch) {
+        boolean confirms = rabbitTemplate.getConnectionFactory().isPublisherConfirms();
+        List<PendingMessage> unsent = new ArrayList<>(batch);
+        try {
+            // One channel for the whole batch; confirms arrive asynchronously on the correlation futures
+            rabbitTemplate.invoke(operations -> {
+                for (PendingMessage message : batch) {
+                    CorrelationData correlation = new CorrelationData(message.id + ":" + message.attempts);
+                    message.attempts++;
+                    message.sentAt = System.nanoTime();
+                    operations.convertAndSend(exchange, message.routingKey, message.event, correlation);
+                    unsent.remove(message);
+                    published.increment();
+                    if (confirms) {
+                        correlation.getFuture()
+                                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                                .whenComplete((confirm, error) -> onConfirm(message, correlation, confirm, error));
+                    } else {
+                        complete(message);
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to publish {} activity events, retrying", unsent.size(), e);
+            unsent.forEach(message -> retryOrGiveUp(message, e));
+        }
+    }
+
+    private void onConfirm(PendingMessage message, CorrelationData correlation,
+                           CorrelationData.Confirm confirm, Throwable error) {
+        if (error == null && confirm.isAck() && correlation.getReturned() == null) {
+            confirmLatency.record(System.nanoTime() - message.sentAt, TimeUnit.NANOSECONDS);
+            complete(message);
+            return;
+        }
+        nacked.increment();
+        String reason = error != null ? "no confirm within " + confirmTimeoutMs + " ms"
+                : correlation.getReturned() != null ? "returned: " + correlation.getReturned().getReplyText()
+                : "nacked: " + confirm.getReason();
+        retryOrGiveUp(message, new IllegalStateException("Activity event " + message.id + " " + reason));
+    }
+
+    private void retryOrGiveUp(PendingMessage message, Exception cause) {
+        if (message.attempts >= maxAttempts || !running) {
+            giveUp(message, cause);
+            return;
+        }
+        retried.increment();
+        long delay = retryDelayMs << Math.max(0, message.attempts - 1);
+        retryScheduler.schedule(() -> outgoing.add(message), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void complete(PendingMessage message) {
+        confirmed.increment();
+        inFlight.release();
+        message.result.complete(null);
+    }
+
+    private void giveUp(PendingMessage message, Exception cause) {
+        log.warn("Giving up on activity event {} after {} attempts: {}", message.id, message.attempts, cause.getMessage());
+        failed.increment();
+        inFlight.release();
+        message.result.completeExceptionally(cause);
+    }
+
+    private static class PendingMessage {
+        private final String id;
+        private final Object event;
+        private final String routingKey;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private volatile int attempts;
+        private volatile long sentAt;
+
+        PendingMessage(String id, Object event, String routingKey) {
+            this.id = id;
+            this.event = event;
+            this.routingKey = routingKey;
+        }
+    }
+}
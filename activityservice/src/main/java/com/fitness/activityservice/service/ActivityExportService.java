@@ -0,0 +1,467 @@
+package com.fitness.activityservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.activityservice.dto.ExportManifest;
+import com.fitness.activityservice.dto.ExportStatus;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.repository.ActivityArchiveRepositoryImpl;
+import com.fitness.activityservice.repository.ActivityRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Admin job exporting activities that started in a time range as gzip CSV files.
+ *
+ * <p>The hot collection is split into {@code activity.export.partitions} contiguous _id ranges,
+ * starting at the _id created when the requested range starts, and every archive month the
+ * range covers becomes one more partition. Activities created before the range with a start
+ * time inside it are read in one extra partition. Partitions are read
+ * with their own cursor on a bounded worker pool, so several cursors and gzip streams keep
+ * the disk busy instead of a single sequential scan. Each partition writes files of at most
+ * {@code activity.export.rows-per-file} rows; a file is renamed into place and recorded in
+ * manifest.json before the next one starts, and its last _id is the checkpoint a resumed
+ * export continues from.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityExportService {
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String SCHEDULED_RUNS = "activity_export_runs";
+    private static final String[] COLUMNS = {"id", "userId", "type", "duration", "caloriesBurned",
+            "startTime", "createdAt", "updatedAt", "metrics"};
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityRepository activityRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, ExportManifest> running = new ConcurrentHashMap<>();
+    private ExecutorService workerPool;
+
+    @Value("${activity.export.directory:exports}")
+    private String directory;
+    @Value("${activity.export.workers:4}")
+    private int workers;
+    @Value("${activity.export.partitions:16}")
+    private int partitions;
+    @Value("${activity.export.rows-per-file:100000}")
+    private int rowsPerFile;
+    @Value("${activity.export.fetch-size:1000}")
+    private int fetchSize;
+    @Value("${activity.export.compression-level:1}")
+    private int compressionLevel;
+    @Value("${activity.export.scheduled-days:1}")
+    private int scheduledDays;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threads = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "activity-export-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // Interrupted partitions keep their checkpoint and can be resumed after a restart
+        workerPool.shutdownNow();
+        workerPool.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Exports the previous {@code activity.export.scheduled-days}. Every instance runs the cron, so
+     * the window is claimed first by inserting a document keyed by its start; only the instance
+     * whose insert succeeds runs the export.
+     */
+    @Scheduled(cron = "${activity.export.cron:-}")
+    public void exportScheduled() {
+        LocalDateTime today = LocalDate.now().atStartOfDay();
+        LocalDateTime from = today.minusDays(scheduledDays);
+        try {
+            if (!claimScheduledRun(from, today)) {
+                log.info("Scheduled activity export from {} was already started by another instance", from);
+                return;
+            }
+            startExport(from, today);
+        } catch (Exception e) {
+            log.error("Scheduled activity export failed to start", e);
+        }
+    }
+
+    private boolean claimScheduledRun(LocalDateTime from, LocalDateTime to) {
+        try {
+            mongoTemplate.insert(new Document("_id", from + "/" + to)
+                    .append("startedAt", LocalDateTime.now()), SCHEDULED_RUNS);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Plans an export of activities that started in [from, to) and starts it in the background.
+     */
+    public ExportManifest startExport(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        ExportManifest manifest = new ExportManifest();
+        manifest.setExportId("activities-" + new ObjectId().toHexString());
+        manifest.setFrom(from);
+        manifest.setTo(to);
+        manifest.setColumns(COLUMNS);
+        manifest.setPartitions(plan(from, to));
+        try {
+            Files.createDirectories(exportDirectory(manifest.getExportId()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        run(manifest);
+        return snapshot(manifest);
+    }
+
+    /**
+     * Restarts the unfinished partitions of an export from their checkpoints.
+     */
+    public ExportManifest resumeExport(String exportId) {
+        if (running.containsKey(exportId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Export is still running: " + exportId);
+        }
+        ExportManifest manifest = readManifest(exportId);
+        if (manifest.getStatus() != ExportStatus.COMPLETED) {
+            run(manifest);
+        }
+        return snapshot(manifest);
+    }
+
+    public ExportManifest getExport(String exportId) {
+        ExportManifest manifest = running.get(exportId);
+        return manifest != null ? snapshot(manifest) : readManifest(exportId);
+    }
+
+    private List<ExportManifest.Partition> plan(LocalDateTime from, LocalDateTime to) {
+        List<ExportManifest.Partition> plan = new ArrayList<>();
+        ObjectId first = boundaryId(Sort.Direction.ASC);
+        ObjectId last = boundaryId(Sort.Direction.DESC);
+        if (first != null && last != null) {
+            // An activity is normally created after it started, so only _ids from the window start on
+            // need scanning; the few created earlier get their own partition, read through start_idx
+            long low = Math.max(first.getTimestamp(), from.toEpochSecond(ZoneOffset.UTC));
+            long high = last.getTimestamp() + 1L;
+            if (low > first.getTimestamp()) {
+                plan.add(partition(plan.size(), "activities", null, idAt(low)));
+            }
+            if (low < high) {
+                // Split the remaining creation time span of the _id index into equal ranges
+                long count = Math.min(partitions, high - low);
+                long step = (high - low + count - 1) / count;
+                for (long start = low; start < high; start += step) {
+                    plan.add(partition(plan.size(), "activities",
+                            start > first.getTimestamp() ? idAt(start) : null,
+                            start + step < high ? idAt(start + step) : null));
+                }
+            }
+        }
+        YearMonth firstMonth = YearMonth.from(from);
+        YearMonth lastMonth = YearMonth.from(to.minusNanos(1));
+        for (String archive : activityRepository.findArchiveCollections()) {
+            YearMonth month = ActivityArchiveRepositoryImpl.archiveMonth(archive);
+            if (!month.isBefore(firstMonth) && !month.isAfter(lastMonth)) {
+                plan.add(partition(plan.size(), archive, null, null));
+            }
+        }
+        return plan;
+    }
+
+    private ExportManifest.Partition partition(int index, String collection, String minId, String maxId) {
+        ExportManifest.Partition partition = new ExportManifest.Partition();
+        partition.setIndex(index);
+        partition.setCollection(collection);
+        partition.setMinId(minId);
+        partition.setMaxId(maxId);
+        partition.setStatus(ExportStatus.RUNNING);
+        return partition;
+    }
+
+    private ObjectId boundaryId(Sort.Direction direction) {
+        Query query = new Query().with(Sort.by(direction, "_id")).limit(1);
+        query.fields().include("_id");
+        Activity activity = mongoTemplate.findOne(query, Activity.class);
+        return activity != null && ObjectId.isValid(activity.getId()) ? new ObjectId(activity.getId()) : null;
+    }
+
+    // Smallest ObjectId created in the given second
+    private String idAt(long epochSecond) {
+        return String.format("%08x0000000000000000", epochSecond);
+    }
+
+    private void run(ExportManifest manifest) {
+        running.put(manifest.getExportId(), manifest);
+        synchronized (manifest) {
+            manifest.setStatus(ExportStatus.RUNNING);
+            manifest.setStartedAt(LocalDateTime.now());
+            manifest.setCompletedAt(null);
+            manifest.getPartitions().stream()
+                    .filter(partition -> partition.getStatus() != ExportStatus.COMPLETED)
+                    .forEach(partition -> partition.setStatus(ExportStatus.RUNNING));
+            writeManifest(manifest);
+        }
+        CompletableFuture<?>[] tasks = manifest.getPartitions().stream()
+                .filter(partition -> partition.getStatus() != ExportStatus.COMPLETED)
+                .map(partition -> CompletableFuture.runAsync(() -> exportPartition(manifest, partition), workerPool))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(tasks).whenComplete((ignored, error) -> finish(manifest));
+    }
+
+    private void finish(ExportManifest manifest) {
+        synchronized (manifest) {
+            boolean failed = manifest.getPartitions().stream()
+                    .anyMatch(partition -> partition.getStatus() != ExportStatus.COMPLETED);
+            manifest.setStatus(failed ? ExportStatus.FAILED : ExportStatus.COMPLETED);
+            manifest.setCompletedAt(LocalDateTime.now());
+            writeManifest(manifest);
+        }
+        running.remove(manifest.getExportId());
+        long rows = manifest.getPartitions().stream().mapToLong(ExportManifest.Partition::getRows).sum();
+        log.info("Activity export {} finished with status {} after {} rows",
+                manifest.getExportId(), manifest.getStatus(), rows);
+    }
+
+    private void exportPartition(ExportManifest manifest, ExportManifest.Partition partition) {
+        Criteria criteria = where("startTime").gte(manifest.getFrom()).lt(manifest.getTo());
+        String lower = partition.getCheckpointId() != null ? partition.getCheckpointId() : partition.getMinId();
+        if (lower != null || partition.getMaxId() != null) {
+            Criteria id = criteria.and("_id");
+            if (lower != null) {
+                if (partition.getCheckpointId() != null) {
+                    id.gt(new ObjectId(lower));
+                } else {
+                    id.gte(new ObjectId(lower));
+                }
+            }
+            if (partition.getMaxId() != null) {
+                id.lt(new ObjectId(partition.getMaxId()));
+            }
+        }
+        Query query = new Query(criteria).with(Sort.by("_id")).cursorBatchSize(fetchSize);
+
+        ChunkWriter writer = new ChunkWriter(manifest, partition);
+        try (Stream<Activity> activities = mongoTemplate.stream(query, Activity.class, partition.getCollection())) {
+            for (Activity activity : (Iterable<Activity>) activities::iterator) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("Export interrupted");
+                }
+                writer.write(activity);
+            }
+            writer.close();
+            synchronized (manifest) {
+                partition.setStatus(ExportStatus.COMPLETED);
+                writeManifest(manifest);
+            }
+        } catch (Exception e) {
+            writer.discard();
+            synchronized (manifest) {
+                partition.setStatus(ExportStatus.FAILED);
+                writeManifest(manifest);
+            }
+            log.error("Partition {} of export {} failed at checkpoint {}",
+                    partition.getIndex(), manifest.getExportId(), partition.getCheckpointId(), e);
+        }
+    }
+
+    private Path exportDirectory(String exportId) {
+        return Path.of(directory, exportId);
+    }
+
+    private void writeManifest(ExportManifest manifest) {
+        Path target = exportDirectory(manifest.getExportId()).resolve(MANIFEST);
+        Path temp = target.resolveSibling(MANIFEST + ".tmp");
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), manifest);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ExportManifest readManifest(String exportId) {
+        Path path = exportDirectory(exportId).normalize().resolve(MANIFEST);
+        if (!path.startsWith(Path.of(directory).normalize()) || !Files.exists(path)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown export: " + exportId);
+        }
+        try {
+            return objectMapper.readValue(path.toFile(), ExportManifest.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ExportManifest snapshot(ExportManifest manifest) {
+        synchronized (manifest) {
+            return objectMapper.convertValue(manifest, ExportManifest.class);
+        }
+    }
+
+    /**
+     * Writes one partition's rows into consecutive gzip files and checkpoints each finished file.
+     * Files are written under a .tmp name, so an interrupted file is simply rewritten on resume.
+     */
+    private class ChunkWriter {
+
+        private final ExportManifest manifest;
+        private final ExportManifest.Partition partition;
+        private Writer out;
+        private Path temp;
+        private long rows;
+        private String lastId;
+
+        ChunkWriter(ExportManifest manifest, ExportManifest.Partition partition) {
+            this.manifest = manifest;
+            this.partition = partition;
+        }
+
+        void write(Activity activity) throws IOException {
+            if (out == null) {
+                open();
+            }
+            writeRow(activity);
+            rows++;
+            lastId = activity.getId();
+            if (rows == rowsPerFile) {
+                close();
+            }
+        }
+
+        private void open() throws IOException {
+            String name = String.format("part-%05d-%05d.csv.gz", partition.getIndex(), partition.getFiles().size());
+            temp = exportDirectory(manifest.getExportId()).resolve(name + ".tmp");
+            OutputStream gzip = new LeveledGzipOutputStream(Files.newOutputStream(temp), compressionLevel);
+            out = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 1 << 16);
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+            rows = 0;
+        }
+
+        private void writeRow(Activity activity) throws IOException {
+            out.write(csv(activity.getId()));
+            out.write(',');
+            out.write(csv(activity.getUserId()));
+            out.write(',');
+            out.write(csv(activity.getType()));
+            out.write(',');
+            out.write(csv(activity.getDuration()));
+            out.write(',');
+            out.write(csv(activity.getCaloriesBurned()));
+            out.write(',');
+            out.write(csv(activity.getStartTime()));
+            out.write(',');
+            out.write(csv(activity.getCreatedAt()));
+            out.write(',');
+            out.write(csv(activity.getUpdatedAt()));
+            out.write(',');
+            out.write(activity.getAdditionalMetrics() == null ? "" : csv(metricsJson(activity)));
+            out.write('\n');
+        }
+
+        void close() throws IOException {
+            if (out == null) {
+                return;
+            }
+            out.close();
+            out = null;
+            Path target = temp.resolveSibling(temp.getFileName().toString().replace(".tmp", ""));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (manifest) {
+                partition.getFiles().add(new ExportManifest.ExportFile(
+                        target.getFileName().toString(), rows, Files.size(target)));
+                partition.setRows(partition.getRows() + rows);
+                partition.setCheckpointId(lastId);
+                writeManifest(manifest);
+            }
+        }
+
+        void discard() {
+            try {
+                if (out != null) {
+                    out.close();
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                log.warn("Could not remove partial export file {}", temp, e);
+            }
+        }
+
+        private String metricsJson(Activity activity) {
+            try {
+                return objectMapper.writeValueAsString(activity.getAdditionalMetrics());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Unserializable metrics on activity " + activity.getId(), e);
+            }
+        }
+
+        private String csv(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 1 << 16);
+            def.setLevel(level);
+        }
+    }
+}
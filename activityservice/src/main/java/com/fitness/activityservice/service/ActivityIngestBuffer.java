@@ -0,0 +1,286 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.IngestStatus;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.OutboxEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-process buffer for asynchronously ingested activities.
+ *
+ * <p>Activities accepted with {@code Prefer: respond-async} are queued here and written to
+ * MongoDB by a single flusher thread in group-commit batches. A batch is flushed when it
+ * reaches {@code activity.ingest.batch-size} items or when {@code activity.ingest.max-wait-ms}
+ * has passed since its first item, whichever comes first. Each batch inserts the outbox
+ * records and then the activities with unordered bulk writes; the outbox relay publishes
+ * them to RabbitMQ afterwards.</p>
+ *
+ * <p>Durability: an accepted activity lives only in memory until its batch is flushed.
+ * A crash or kill -9 in that window loses it, so clients must treat a 202 as "accepted",
+ * not "stored", and poll the status URL if they need confirmation. A graceful shutdown
+ * drains the buffer before the application stops. Once flushed, activities get the same
+ * guarantees as synchronously tracked ones.</p>
+ *
+ * <p>A batch that fails with a transient error, such as a lost connection or a timeout, is
+ * retried with backoff, capped at {@code activity.ingest.max-retry-backoff-ms}, until it
+ * succeeds. While it is failing, new activities are rejected so callers get a 503 instead of a
+ * 202 for an activity that cannot be stored. A batch the server rejects is written again one
+ * activity at a time, so only the rejected activities are marked FAILED and have their
+ * Idempotency-Key released. Idempotency keys are completed only once their activity has been
+ * written.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityIngestBuffer {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityRollupService activityRollupService;
+    private final LeaderboardService leaderboardService;
+    private final IdempotencyService idempotencyService;
+
+    @Value("${activity.ingest.buffer-capacity:10000}")
+    private int bufferCapacity;
+    @Value("${activity.ingest.batch-size:500}")
+    private int batchSize;
+    @Value("${activity.ingest.max-wait-ms:50}")
+    private long maxWaitMs;
+    @Value("${activity.ingest.max-retry-backoff-ms:5000}")
+    private long maxRetryBackoffMs;
+
+    private BlockingQueue<PendingActivity> buffer;
+    /** Activities waiting in the buffer or in the batch being flushed, so at most capacity plus one batch */
+    private final Map<String, IngestStatus> statuses = new ConcurrentHashMap<>();
+    /** Most recently rejected activities, at most buffer-capacity of them */
+    private Set<String> rejected;
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile boolean flushFailing;
+
+    @PostConstruct
+    void start() {
+        buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        rejected = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > bufferCapacity;
+            }
+        }));
+        running = true;
+        flusher = new Thread(this::flushLoop, "activity-ingest-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        if (flusher.isAlive()) {
+            log.error("Shutting down with {} buffered activities not stored", statuses.size());
+        }
+    }
+
+    /**
+     * Queues an activity and its outbox record for the next group commit.
+     *
+     * @param reservation the Idempotency-Key reservation to complete once the activity is stored, or null
+     * @return false if the buffer is full or MongoDB writes are failing and the caller should apply backpressure
+     */
+    public boolean offer(Activity activity, OutboxEvent outboxEvent,
+                         IdempotencyService.Reservation reservation, String fingerprint) {
+        if (flushFailing) {
+            return false;
+        }
+        statuses.put(activity.getId(), IngestStatus.QUEUED);
+        if (!buffer.offer(new PendingActivity(activity, outboxEvent, reservation, fingerprint))) {
+            statuses.remove(activity.getId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the in-memory status of an activity, or null once it has been stored.
+     */
+    public IngestStatus statusOf(String activityId) {
+        IngestStatus status = statuses.get(activityId);
+        if (status == null && rejected.contains(activityId)) {
+            return IngestStatus.FAILED;
+        }
+        return status;
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    private void flushLoop() {
+        List<PendingActivity> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingActivity first = buffer.poll(maxWaitMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < batchSize) {
+                    if (buffer.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingActivity next = remaining > 0 ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested: drain whatever is left and flush it below
+                buffer.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        log.info("Activity ingest flusher stopped");
+    }
+
+    private void flush(List<PendingActivity> batch) {
+        List<PendingActivity> stored = batch;
+        if (!write(batch)) {
+            // A document the server rejects fails the whole batch on every attempt, so isolate it
+            stored = new ArrayList<>(batch.size());
+            for (PendingActivity pending : batch) {
+                if (write(List.of(pending))) {
+                    stored.add(pending);
+                } else {
+                    reject(pending);
+                }
+            }
+        }
+        flushFailing = false;
+        stored.forEach(this::complete);
+        // The activities are stored; retrying the batch for these would count them twice
+        List<Activity> activities = stored.stream().map(PendingActivity::activity).toList();
+        try {
+            activityRollupService.recordAll(activities);
+            activities.forEach(leaderboardService::record);
+        } catch (Exception e) {
+            log.error("Failed to update rollups for {} flushed activities, a stats rebuild corrects them", stored.size(), e);
+        }
+        log.debug("Flushed {} buffered activities", stored.size());
+    }
+
+    /**
+     * Inserts the outbox records and activities, retrying transient errors until they succeed.
+     *
+     * @return false if the server rejected the write, which retrying would not change
+     */
+    private boolean write(List<PendingActivity> pending) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                bulkInsert(OutboxEvent.class, pending.stream().map(PendingActivity::outboxEvent).toList());
+                bulkInsert(Activity.class, pending.stream().map(PendingActivity::activity).toList());
+                return true;
+            } catch (Exception e) {
+                if (!isTransient(e)) {
+                    log.warn("MongoDB rejected {} buffered activities", pending.size(), e);
+                    return false;
+                }
+                flushFailing = true;
+                log.warn("Flush of {} buffered activities failed (attempt {}), retrying", pending.size(), attempt, e);
+                pause(Math.min(100L << Math.min(attempt, 16), maxRetryBackoffMs));
+            }
+        }
+    }
+
+    private static boolean isTransient(Exception e) {
+        return e instanceof TransientDataAccessException || e instanceof DataAccessResourceFailureException;
+    }
+
+    // Its outbox record, if written, is discarded by the relay once the activity is overdue
+    private void reject(PendingActivity pending) {
+        String activityId = pending.activity().getId();
+        log.error("Dropping activity {} for user {}, MongoDB rejected it", activityId, pending.activity().getUserId());
+        rejected.add(activityId);
+        statuses.remove(activityId);
+        try {
+            if (pending.reservation() != null) {
+                idempotencyService.release(pending.reservation());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency key for activity {}", activityId, e);
+        }
+    }
+
+    private void complete(PendingActivity pending) {
+        try {
+            if (pending.reservation() != null) {
+                idempotencyService.complete(pending.reservation(), pending.fingerprint());
+            }
+        } catch (Exception e) {
+            // The activity exists, so a replay of the key still finds it
+            log.warn("Failed to complete idempotency key for activity {}", pending.activity().getId(), e);
+        } finally {
+            statuses.remove(pending.activity().getId());
+        }
+    }
+
+    /**
+     * Inserts documents with an unordered bulk write. Documents carry pre-assigned IDs,
+     * so duplicate key errors on a retried batch mean the document is already stored.
+     */
+    private <T> void bulkInsert(Class<T> type, List<T> documents) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                    .insert(documents)
+                    .execute();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream()
+                    .allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+        }
+    }
+
+    // Shutdown interrupts the flusher, but a failing batch is still retried until the JVM exits
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            log.warn("Shutdown requested while a flush is failing, still retrying");
+        }
+    }
+
+    private record PendingActivity(Activity activity, OutboxEvent outboxEvent,
+                                   IdempotencyService.Reservation reservation, String fingerprint) {
+    }
+}
@@ -0,0 +1,247 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.RollupGranularity;
+import com.fitness.activityservice.repository.ActivityRepository;
+import com.fitness.activityservice.repository.ActivityRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Service maintaining per-user daily, weekly and monthly activity rollups.
+ *
+ * <p>Every tracked activity increments the matching day, week and month bucket with an
+ * upserting $inc, so stats reads touch one document per bucket instead of every activity.
+ * Rollup updates are best effort: if one fails the activity is still stored and
+ * {@link #rebuild()} restores exact totals from the activities collection.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityRollupService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityRollupRepository activityRollupRepository;
+    private final ActivityRepository activityRepository;
+
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+
+    public void record(Activity activity) {
+        recordAll(List.of(activity));
+    }
+
+    /**
+     * Applies the given activities to their rollup buckets in a single unordered bulk write.
+     */
+    public void recordAll(List<Activity> activities) {
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+            int updates = 0;
+            for (Activity activity : activities) {
+                LocalDate date = activityDate(activity);
+                if (date == null || activity.getUserId() == null) {
+                    continue;
+                }
+                for (RollupGranularity granularity : RollupGranularity.values()) {
+                    LocalDate bucketStart = granularity.bucketStart(date);
+                    bulk.upsert(bucketQuery(activity.getUserId(), granularity, bucketStart),
+                            increment(activity, activity.getUserId(), granularity, bucketStart));
+                    updates++;
+                }
+            }
+            if (updates > 0) {
+                bulk.execute();
+            }
+        } catch (Exception e) {
+            log.error("Failed to update rollups for {} activities, run a rebuild to repair totals", activities.size(), e);
+        }
+    }
+
+    public List<ActivityStatsResponse> getStats(String userId, RollupGranularity granularity, LocalDate from, LocalDate to) {
+        return activityRollupRepository.findBuckets(userId, granularity,
+                        granularity.bucketStart(from), to, Sort.by("bucketStart"))
+                .stream()
+                .map(this::mapToResponse)
+                .toList();
+    }
+
+    /**
+     * Starts a background rebuild of all rollups from the activities collection.
+     *
+     * @return false if a rebuild is already running
+     */
+    public boolean startRebuild() {
+        if (!rebuildRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                rebuild();
+            } finally {
+                rebuildRunning.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Recomputes every rollup bucket from scratch, including archived activities.
+     * Activities are streamed sorted by user so only one user's buckets are held in memory;
+     * each user's buckets are replaced with absolute totals. Activities tracked while the
+     * rebuild passes over their user may be counted twice or not at all, so run it
+     * during low traffic or repeat it for affected users.
+     */
+    public void rebuild() {
+        log.info("Rebuilding activity rollups");
+        long started = System.currentTimeMillis();
+        ProjectionOperation projection = Aggregation.project(
+                "userId", "type", "duration", "caloriesBurned", "startTime", "createdAt");
+        List<AggregationOperation> pipeline = new ArrayList<>();
+        pipeline.add(projection);
+        for (String archive : activityRepository.findArchiveCollections()) {
+            pipeline.add(UnionWithOperation.unionWith(archive).pipeline(projection));
+        }
+        pipeline.add(Aggregation.sort(Sort.by("userId")));
+        Aggregation aggregation = Aggregation.newAggregation(pipeline)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        Map<String, ActivityRollup> buckets = new HashMap<>();
+        String currentUser = null;
+        long users = 0;
+        try (Stream<Activity> activities = mongoTemplate.aggregateStream(aggregation, Activity.class, Activity.class)) {
+            for (Activity activity : (Iterable<Activity>) activities::iterator) {
+                if (!Objects.equals(currentUser, activity.getUserId())) {
+                    replaceBuckets(currentUser, buckets);
+                    currentUser = activity.getUserId();
+                    users++;
+                }
+                accumulate(buckets, activity);
+            }
+        }
+        replaceBuckets(currentUser, buckets);
+        log.info("Rebuilt activity rollups for {} users in {} ms", users, System.currentTimeMillis() - started);
+    }
+
+    private void replaceBuckets(String userId, Map<String, ActivityRollup> buckets) {
+        if (userId == null || buckets.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+        buckets.values().forEach(rollup -> bulk.replaceOne(
+                new Query(where("_id").is(rollup.getId())), rollup, FindAndReplaceOptions.options().upsert()));
+        bulk.execute();
+        buckets.clear();
+    }
+
+    private void accumulate(Map<String, ActivityRollup> buckets, Activity activity) {
+        LocalDate date = activityDate(activity);
+        if (date == null || activity.getUserId() == null) {
+            return;
+        }
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDate bucketStart = granularity.bucketStart(date);
+            String id = ActivityRollup.idOf(activity.getUserId(), granularity, bucketStart);
+            ActivityRollup rollup = buckets.computeIfAbsent(id, key -> ActivityRollup.builder()
+                    .id(key)
+                    .userId(activity.getUserId())
+                    .granularity(granularity)
+                    .bucketStart(bucketStart)
+                    .byType(new EnumMap<>(ActivityType.class))
+                    .build());
+            long calories = valueOf(activity.getCaloriesBurned());
+            long duration = valueOf(activity.getDuration());
+            rollup.setCaloriesBurned(rollup.getCaloriesBurned() + calories);
+            rollup.setDuration(rollup.getDuration() + duration);
+            rollup.setSessions(rollup.getSessions() + 1);
+            if (activity.getType() != null) {
+                ActivityRollup.RollupTotals totals = rollup.getByType()
+                        .computeIfAbsent(activity.getType(), type -> new ActivityRollup.RollupTotals());
+                totals.setCaloriesBurned(totals.getCaloriesBurned() + calories);
+                totals.setDuration(totals.getDuration() + duration);
+                totals.setSessions(totals.getSessions() + 1);
+            }
+        }
+    }
+
+    private Query bucketQuery(String userId, RollupGranularity granularity, LocalDate bucketStart) {
+        return new Query(where("_id").is(ActivityRollup.idOf(userId, granularity, bucketStart)));
+    }
+
+    private Update increment(Activity activity, String userId, RollupGranularity granularity, LocalDate bucketStart) {
+        long calories = valueOf(activity.getCaloriesBurned());
+        long duration = valueOf(activity.getDuration());
+        Update update = new Update()
+                .setOnInsert("userId", userId)
+                .setOnInsert("granularity", granularity)
+                .setOnInsert("bucketStart", bucketStart)
+                .inc("caloriesBurned", calories)
+                .inc("duration", duration)
+                .inc("sessions", 1);
+        if (activity.getType() != null) {
+            String prefix = "byType." + activity.getType().name() + ".";
+            update.inc(prefix + "caloriesBurned", calories)
+                    .inc(prefix + "duration", duration)
+                    .inc(prefix + "sessions", 1);
+        }
+        return update;
+    }
+
+    private LocalDate activityDate(Activity activity) {
+        LocalDateTime time = activity.getStartTime() != null ? activity.getStartTime() : activity.getCreatedAt();
+        return time != null ? time.toLocalDate() : null;
+    }
+
+    private long valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private ActivityStatsResponse mapToResponse(ActivityRollup rollup) {
+        ActivityStatsResponse response = new ActivityStatsResponse();
+        response.setBucketStart(rollup.getBucketStart());
+        response.setCaloriesBurned(rollup.getCaloriesBurned());
+        response.setDuration(rollup.getDuration());
+        response.setSessions(rollup.getSessions());
+        Map<ActivityType, ActivityStatsResponse.TypeTotals> byType =
+                new EnumMap<>(ActivityType.class);
+        if (rollup.getByType() != null) {
+            rollup.getByType().forEach((type, totals) -> {
+                ActivityStatsResponse.TypeTotals typeTotals = new ActivityStatsResponse.TypeTotals();
+                typeTotals.setCaloriesBurned(totals.getCaloriesBurned());
+                typeTotals.setDuration(totals.getDuration());
+                typeTotals.setSessions(totals.getSessions());
+                byType.put(type, typeTotals);
+            });
+        }
+        response.setByType(byType);
+        return response;
+    }
+}
@@ -0,0 +1,299 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.SampleChunkRequest;
+import com.fitness.activityservice.dto.SamplePoint;
+import com.fitness.activityservice.dto.SampleSeriesResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivitySample;
+import com.fitness.activityservice.model.ActivitySampleBucket;
+import com.fitness.activityservice.model.SampleChunk;
+import com.fitness.activityservice.model.SampleResolution;
+import com.fitness.activityservice.repository.ActivityRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Service storing and querying high-frequency workout samples.
+ *
+ * <p>Raw samples go to the 'activity_samples' time-series collection. Each uploaded chunk is
+ * also downsampled into 10 second and 1 minute buckets, merged into existing buckets with
+ * $inc/$min/$max so bucket boundaries do not need to line up with chunk boundaries.
+ * Range queries pick the finest tier that stays within the requested number of points.</p>
+ *
+ * <p>A chunk is recorded as uploaded only after all of its writes succeeded, and every write
+ * can be repeated: raw samples carry their chunk index and are replaced on a retry, and each
+ * bucket lists the chunks merged into it so a retried chunk is not counted twice.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivitySampleService {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private static final List<SampleResolution> DOWNSAMPLED = List.of(
+            SampleResolution.TEN_SECONDS, SampleResolution.ONE_MINUTE);
+
+    private static final Map<String, Function<SamplePoint, Double>> METRICS = new LinkedHashMap<>();
+    private static final Map<String, BiConsumer<SamplePoint, Double>> METRIC_SETTERS = new HashMap<>();
+
+    static {
+        metric("heartRate", SamplePoint::getHeartRate, SamplePoint::setHeartRate);
+        metric("pace", SamplePoint::getPace, SamplePoint::setPace);
+        metric("speed", SamplePoint::getSpeed, SamplePoint::setSpeed);
+        metric("cadence", SamplePoint::getCadence, SamplePoint::setCadence);
+        metric("latitude", SamplePoint::getLatitude, SamplePoint::setLatitude);
+        metric("longitude", SamplePoint::getLongitude, SamplePoint::setLongitude);
+        metric("altitude", SamplePoint::getAltitude, SamplePoint::setAltitude);
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityRepository activityRepository;
+
+    @Value("${activity.samples.max-chunk-size:5000}")
+    private int maxChunkSize;
+
+    private static void metric(String name, Function<SamplePoint, Double> getter, BiConsumer<SamplePoint, Double> setter) {
+        METRICS.put(name, getter);
+        METRIC_SETTERS.put(name, setter);
+    }
+
+    @PostConstruct
+    void createCollection() {
+        try {
+            if (!mongoTemplate.collectionExists(ActivitySample.class)) {
+                mongoTemplate.createCollection(ActivitySample.class);
+                log.info("Created time-series collection for activity samples");
+            }
+        } catch (Exception e) {
+            log.warn("Could not verify activity sample time-series collection", e);
+        }
+    }
+
+    /**
+     * Stores one chunk of samples and merges it into the downsampled tiers.
+     *
+     * @return the number of samples stored, 0 if the chunk had already been uploaded
+     */
+    public int uploadChunk(String activityId, String userId, SampleChunkRequest request) {
+        Activity activity = findOwnedActivity(activityId, userId);
+        List<SamplePoint> points = request.getSamples() != null ? request.getSamples() : List.of();
+        if (points.size() > maxChunkSize) {
+            throw new IllegalArgumentException("Chunk exceeds " + maxChunkSize + " samples");
+        }
+        points = points.stream().filter(point -> point.getTimestamp() != null).toList();
+        if (points.isEmpty()) {
+            return 0;
+        }
+
+        String chunkId = activityId + ":" + request.getChunkIndex();
+        if (mongoTemplate.exists(new Query(where("_id").is(chunkId)), SampleChunk.class)) {
+            log.info("Skipping already uploaded chunk {} for activity {}", request.getChunkIndex(), activityId);
+            return 0;
+        }
+
+        // Samples left behind by a failed attempt of this chunk are replaced
+        ActivitySample.Meta meta = new ActivitySample.Meta(activityId, activity.getUserId(), request.getChunkIndex());
+        mongoTemplate.remove(new Query(where("meta.activityId").is(activityId)
+                .and("meta.chunkIndex").is(request.getChunkIndex())), ActivitySample.class);
+        mongoTemplate.insert(points.stream().map(point -> toSample(point, meta)).toList(), ActivitySample.class);
+        mergeIntoBuckets(activityId, activity.getUserId(), chunkId, points);
+        try {
+            mongoTemplate.insert(new SampleChunk(chunkId, points.size(), LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            log.info("Chunk {} for activity {} was uploaded concurrently", request.getChunkIndex(), activityId);
+        }
+        log.debug("Stored {} samples for activity {}", points.size(), activityId);
+        return points.size();
+    }
+
+    /**
+     * Returns samples in [from, to), served from the requested tier or, if none is given,
+     * the finest tier producing at most maxPoints points.
+     */
+    public SampleSeriesResponse getSamples(String activityId, String userId, LocalDateTime from, LocalDateTime to,
+                                           SampleResolution resolution, int maxPoints) {
+        Activity activity = findOwnedActivity(activityId, userId);
+        if (from == null) {
+            from = activity.getStartTime() != null ? activity.getStartTime() : activity.getCreatedAt();
+        }
+        if (to == null) {
+            to = from.plusDays(1);
+        }
+        SampleResolution tier = resolution != null ? resolution : chooseResolution(from, to, maxPoints);
+
+        SampleSeriesResponse response = new SampleSeriesResponse();
+        response.setActivityId(activityId);
+        response.setResolution(tier);
+        response.setPoints(tier == SampleResolution.RAW
+                ? readRaw(activityId, from, to, maxPoints)
+                : readBuckets(activityId, tier, from, to, maxPoints));
+        return response;
+    }
+
+    private SampleResolution chooseResolution(LocalDateTime from, LocalDateTime to, int maxPoints) {
+        long seconds = Duration.between(from, to).getSeconds();
+        for (SampleResolution candidate : SampleResolution.values()) {
+            if (seconds / candidate.getSeconds() <= maxPoints) {
+                return candidate;
+            }
+        }
+        return SampleResolution.ONE_MINUTE;
+    }
+
+    private List<SamplePoint> readRaw(String activityId, LocalDateTime from, LocalDateTime to, int limit) {
+        Query query = new Query(where("meta.activityId").is(activityId).and("timestamp").gte(from).lt(to))
+                .with(Sort.by("timestamp"))
+                .limit(limit);
+        return mongoTemplate.find(query, ActivitySample.class).stream()
+                .map(this::toPoint)
+                .toList();
+    }
+
+    private List<SamplePoint> readBuckets(String activityId, SampleResolution tier, LocalDateTime from,
+                                          LocalDateTime to, int limit) {
+        Query query = new Query(where("activityId").is(activityId).and("resolution").is(tier)
+                .and("bucketStart").gte(truncate(from, tier)).lt(to))
+                .with(Sort.by("bucketStart"))
+                .limit(limit);
+        return mongoTemplate.find(query, ActivitySampleBucket.class).stream()
+                .map(this::toPoint)
+                .toList();
+    }
+
+    /**
+     * Merges a chunk into the buckets it touches. Each upsert only matches a bucket that does not
+     * list the chunk yet; for one that does, the upsert fails with a duplicate key and is skipped.
+     */
+    private void mergeIntoBuckets(String activityId, String userId, String chunkId, List<SamplePoint> points) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivitySampleBucket.class);
+        for (SampleResolution tier : DOWNSAMPLED) {
+            // Pre-aggregate in memory so each bucket touched by the chunk costs one upsert
+            Map<LocalDateTime, ActivitySampleBucket> buckets = new LinkedHashMap<>();
+            for (SamplePoint point : points) {
+                ActivitySampleBucket bucket = buckets.computeIfAbsent(truncate(point.getTimestamp(), tier),
+                        start -> ActivitySampleBucket.builder().bucketStart(start).metrics(new HashMap<>()).build());
+                bucket.setSamples(bucket.getSamples() + 1);
+                METRICS.forEach((name, getter) -> {
+                    Double value = getter.apply(point);
+                    if (value != null) {
+                        bucket.getMetrics().merge(name, new ActivitySampleBucket.MetricStats(value, 1, value, value),
+                                (current, added) -> new ActivitySampleBucket.MetricStats(
+                                        current.getSum() + added.getSum(),
+                                        current.getCount() + added.getCount(),
+                                        Math.min(current.getMin(), added.getMin()),
+                                        Math.max(current.getMax(), added.getMax())));
+                    }
+                });
+            }
+            buckets.forEach((bucketStart, bucket) -> {
+                Update update = new Update()
+                        .setOnInsert("activityId", activityId)
+                        .setOnInsert("userId", userId)
+                        .setOnInsert("resolution", tier)
+                        .setOnInsert("bucketStart", bucketStart)
+                        .addToSet("chunks", chunkId)
+                        .inc("samples", bucket.getSamples());
+                bucket.getMetrics().forEach((name, stats) -> {
+                    String prefix = "metrics." + name + ".";
+                    update.inc(prefix + "sum", stats.getSum())
+                            .inc(prefix + "count", stats.getCount())
+                            .min(prefix + "min", stats.getMin())
+                            .max(prefix + "max", stats.getMax());
+                });
+                bulk.upsert(new Query(where("_id").is(ActivitySampleBucket.idOf(activityId, tier, bucketStart))
+                        .and("chunks").ne(chunkId)), update);
+            });
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            boolean onlyApplied = e.getErrors().stream()
+                    .allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR);
+            if (!onlyApplied) {
+                throw e;
+            }
+        }
+    }
+
+    private Activity findOwnedActivity(String activityId, String userId) {
+        Activity activity = activityRepository.findByIdAcrossTiers(activityId)
+                .orElseThrow(() -> new RuntimeException("Activity not found with id: " + activityId));
+        if (userId != null && !userId.equals(activity.getUserId())) {
+            throw new RuntimeException("Activity not found with id: " + activityId);
+        }
+        return activity;
+    }
+
+    private LocalDateTime truncate(LocalDateTime time, SampleResolution tier) {
+        LocalDateTime minute = time.truncatedTo(ChronoUnit.MINUTES);
+        if (tier == SampleResolution.ONE_MINUTE) {
+            return minute;
+        }
+        int second = time.getSecond() / tier.getSeconds() * tier.getSeconds();
+        return minute.plusSeconds(second);
+    }
+
+    private ActivitySample toSample(SamplePoint point, ActivitySample.Meta meta) {
+        return ActivitySample.builder()
+                .timestamp(point.getTimestamp())
+                .meta(meta)
+                .heartRate(point.getHeartRate())
+                .pace(point.getPace())
+                .speed(point.getSpeed())
+                .cadence(point.getCadence())
+                .latitude(point.getLatitude())
+                .longitude(point.getLongitude())
+                .altitude(point.getAltitude())
+                .build();
+    }
+
+    private SamplePoint toPoint(ActivitySample sample) {
+        SamplePoint point = new SamplePoint();
+        point.setTimestamp(sample.getTimestamp());
+        point.setHeartRate(sample.getHeartRate());
+        point.setPace(sample.getPace());
+        point.setSpeed(sample.getSpeed());
+        point.setCadence(sample.getCadence());
+        point.setLatitude(sample.getLatitude());
+        point.setLongitude(sample.getLongitude());
+        point.setAltitude(sample.getAltitude());
+        return point;
+    }
+
+    private SamplePoint toPoint(ActivitySampleBucket bucket) {
+        SamplePoint point = new SamplePoint();
+        point.setTimestamp(bucket.getBucketStart());
+        if (bucket.getMetrics() != null) {
+            bucket.getMetrics().forEach((name, stats) -> {
+                BiConsumer<SamplePoint, Double> setter = METRIC_SETTERS.get(name);
+                if (setter != null && stats.getCount() > 0) {
+                    setter.accept(point, stats.getSum() / stats.getCount());
+                }
+            });
+        }
+        return point;
+    }
+}
@@ -1,19 +1,55 @@
 package com.fitness.activityservice.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.activityservice.model.ActivityLane;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.LeaderboardMetric;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.model.OutboxStatus;
+import com.fitness.activityservice.model.RollupGranularity;
+import com.fitness.activityservice.repository.ActivityArchiveRepositoryImpl;
 import com.fitness.activityservice.repository.ActivityRepository;
+import com.fitness.activityservice.repository.OutboxEventRepository;
+import com.fitness.activityservice.dto.ActivityChangesResponse;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.IngestReceipt;
+import com.fitness.activityservice.dto.LeaderboardResponse;
+import com.fitness.activityservice.dto.IngestStatus;
 import com.fitness.activityservice.model.Activity;
 import lombok.RequiredArgsConstructor;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 /**
  * Service layer for activity-related business logic.
  * Handles activity tracking and retrieval operations.
@@ -26,50 +62,82 @@ public class ActivityService {
 
     private final ActivityRepository activityRepository;
     private final UserValidationService userValidationService;
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+    private final ActivityIngestBuffer activityIngestBuffer;
+    private final ActivityRollupService activityRollupService;
+    private final LeaderboardService leaderboardService;
+    private final IdempotencyService idempotencyService;
+    private final ActivityChangeService activityChangeService;
+    private final MongoTemplate mongoTemplate;
+
+    /** Activities that started longer ago than this are historical and go to the backfill lane */
+    @Value("${activity.lanes.backfill-after-hours:24}")
+    private long backfillAfterHours;
+    @Value("${activity.archive.after-days:365}")
+    private long archiveAfterDays;
+    @Value("${activity.archive.page-months:12}")
+    private long archivePageMonths;
+
+    private static final ObjectMapper CANONICAL_JSON = JsonMapper.builder()
+            .findAndAddModules()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
 
-    @Value("${rabbitmq.exchange.name}")
-    private String exchange;
-    @Value("${rabbitmq.routing.key}")
-    private String routingKey;
+    private static final Set<String> SELECTABLE_FIELDS = Set.of("id", "userId", "type", "duration",
+            "caloriesBurned", "startTime", "additionalMetrics", "createdAt", "updatedAt");
+
+    /**
+     * Tracks an activity, honouring an optional Idempotency-Key.
+     * A replayed key returns the activity created by the first request
+     * without saving or publishing it again.
+     */
+    public ActivityResponse trackActivity(ActivityRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return storeActivity(request, new ObjectId().toHexString());
+        }
+        String fingerprint = fingerprint(request);
+        IdempotencyService.Reservation reservation =
+                idempotencyService.reserve(request.getUserId(), idempotencyKey, fingerprint);
+        if (reservation.replay()) {
+            // A key first used with respond-async may still point at a buffered activity
+            return activityRepository.findByIdAcrossTiers(reservation.activityId())
+                    .map(this::mapToResponse)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT,
+                            "Activity " + reservation.activityId() + " for this idempotency key is not stored yet, "
+                                    + "see /api/activities/ingest/" + reservation.activityId()));
+        }
+        ActivityResponse response;
+        try {
+            response = storeActivity(request, reservation.activityId());
+        } catch (RuntimeException e) {
+            // Nothing was stored, so the client may retry with the same key
+            idempotencyService.release(reservation);
+            throw e;
+        }
+        idempotencyService.complete(reservation, fingerprint);
+        return response;
+    }
 
-    public ActivityResponse trackActivity(ActivityRequest request) {
+    private ActivityResponse storeActivity(ActivityRequest request, String activityId) {
         log.info("Received request to track activity for user: {}", request.getUserId());
         
         try {
-            log.debug("Validating user: {}", request.getUserId());
-            boolean isValidUser = userValidationService.validateUser(request.getUserId());
-            
-            if (!isValidUser) {
-                log.warn("Invalid user ID provided: {}", request.getUserId());
-                throw new RuntimeException("User not found with id: " + request.getUserId());
-            }
-            
-            log.debug("User validation successful for ID: {}", request.getUserId());
+            validateUser(request.getUserId());
 
             log.debug("Creating activity record for user: {}", request.getUserId());
-            Activity activity = Activity.builder()
-                    .userId(request.getUserId())
-                    .type(request.getType())
-                    .duration(request.getDuration())
-                    .caloriesBurned(request.getCaloriesBurned())
-                    .startTime(request.getStartTime())
-                    .additionalMetrics(request.getAdditionalMetrics())
-                    .build();
+            LocalDateTime now = LocalDateTime.now();
+            Activity activity = toActivity(request, activityId, now);
+
+            // Record the event first; the relay skips it until the activity exists,
+            // so an activity is never stored without its event for AI processing
+            outboxEventRepository.insert(toOutboxEvent(activity, now));
 
             log.debug("Saving activity to repository: {}", activity);
-            Activity savedActivity = activityRepository.save(activity);
+            Activity savedActivity = activityRepository.insert(activity);
             log.info("Successfully saved activity with ID: {} for user: {}", 
                     savedActivity.getId(), savedActivity.getUserId());
-
-            //Publish activity to RabbitMQ for AI Processing
-                try{
-                    rabbitTemplate.convertAndSend(exchange, routingKey, savedActivity);
-                }catch(Exception e){
-                    log.error("Failed to publish activity to RabbitMQ for user: {}", request.getUserId(), e);
-                }
-
-
+            recordStats(savedActivity);
 
             return mapToResponse(savedActivity);
 
@@ -78,6 +146,133 @@ public class ActivityService {
             throw new RuntimeException("Failed to track activity: " + e.getMessage(), e);
         }
     }
+
+    // The activity is stored at this point; failing the request would make the client store it again
+    private void recordStats(Activity activity) {
+        try {
+            activityRollupService.record(activity);
+            leaderboardService.record(activity);
+        } catch (Exception e) {
+            log.error("Failed to update rollups for activity {}, a stats rebuild corrects them", activity.getId(), e);
+        }
+    }
+
+    /**
+     * Accepts an activity for asynchronous ingestion.
+     * The user is validated synchronously, then the activity is handed to the ingest buffer
+     * which writes it to MongoDB in a later group commit.
+     *
+     * The Idempotency-Key is completed by the flusher once the activity is stored.
+     *
+     * @return the receipt for the queued activity, or empty if the buffer cannot take it
+     */
+    public Optional<IngestReceipt> acceptActivity(ActivityRequest request, String idempotencyKey) {
+        log.info("Received async request to track activity for user: {}", request.getUserId());
+        validateUser(request.getUserId());
+
+        String fingerprint = fingerprint(request);
+        IdempotencyService.Reservation reservation = idempotencyKey != null
+                ? idempotencyService.reserve(request.getUserId(), idempotencyKey, fingerprint)
+                : null;
+        if (reservation != null && reservation.replay()) {
+            return Optional.of(getIngestStatus(reservation.activityId()));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        String activityId = reservation != null ? reservation.activityId() : new ObjectId().toHexString();
+        Activity activity = toActivity(request, activityId, now);
+        if (reservation != null) {
+            idempotencyService.markQueued(reservation);
+        }
+        if (!activityIngestBuffer.offer(activity, toOutboxEvent(activity, now), reservation, fingerprint)) {
+            log.warn("Ingest buffer full or failing, rejecting activity for user: {}", request.getUserId());
+            if (reservation != null) {
+                idempotencyService.release(reservation);
+            }
+            return Optional.empty();
+        }
+        return Optional.of(new IngestReceipt(activity.getId(), IngestStatus.QUEUED));
+    }
+
+    public List<ActivityStatsResponse> getStats(String userId, String granularity, LocalDate from, LocalDate to) {
+        return activityRollupService.getStats(userId, RollupGranularity.fromString(granularity), from, to);
+    }
+
+    public LeaderboardResponse getLeaderboard(String userId, String period, String metric, ActivityType type, int limit) {
+        return leaderboardService.getLeaderboard(RollupGranularity.fromString(period),
+                LeaderboardMetric.fromString(metric), type, limit, userId);
+    }
+
+    public ActivityChangesResponse getChanges(String userId, String since) {
+        return activityChangeService.getChanges(userId, since, this::mapToResponse);
+    }
+
+    public IngestReceipt getIngestStatus(String activityId) {
+        IngestStatus status = activityIngestBuffer.statusOf(activityId);
+        if (status == null) {
+            status = activityRepository.existsById(activityId) ? IngestStatus.STORED : IngestStatus.UNKNOWN;
+        }
+        return new IngestReceipt(activityId, status);
+    }
+
+    private void validateUser(String userId) {
+        log.debug("Validating user: {}", userId);
+        boolean isValidUser = userValidationService.validateUser(userId);
+
+        if (!isValidUser) {
+            log.warn("Invalid user ID provided: {}", userId);
+            throw new RuntimeException("User not found with id: " + userId);
+        }
+
+        log.debug("User validation successful for ID: {}", userId);
+    }
+
+    // The ID is pre-assigned so the outbox record can reference the activity before it is written.
+    // createdAt is set explicitly because auditing treats documents with an ID as existing ones.
+    private Activity toActivity(ActivityRequest request, String activityId, LocalDateTime now) {
+        return Activity.builder()
+                .id(activityId)
+                .userId(request.getUserId())
+                .type(request.getType())
+                .duration(request.getDuration())
+                .caloriesBurned(request.getCaloriesBurned())
+                .startTime(request.getStartTime())
+                .additionalMetrics(request.getAdditionalMetrics())
+                .createdAt(now)
+                .build();
+    }
+
+    /**
+     * SHA-256 of the request as JSON with sorted properties and map keys, so equal requests
+     * match regardless of the order their metrics were sent in.
+     */
+    private String fingerprint(ActivityRequest request) {
+        try {
+            byte[] canonical = CANONICAL_JSON.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to fingerprint activity request", e);
+        }
+    }
+
+    private OutboxEvent toOutboxEvent(Activity activity, LocalDateTime now) {
+        return OutboxEvent.builder()
+                .id(new ObjectId().toHexString())
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .status(OutboxStatus.PENDING)
+                .lane(laneOf(activity, now))
+                .createdAt(now)
+                .build();
+    }
+
+    // Nobody is waiting for the analysis of an old workout, so it must not hold up recent ones
+    private ActivityLane laneOf(Activity activity, LocalDateTime now) {
+        return activity.getStartTime() != null && activity.getStartTime().isBefore(now.minusHours(backfillAfterHours))
+                ? ActivityLane.BACKFILL
+                : ActivityLane.LIVE;
+    }
+
     private ActivityResponse mapToResponse(Activity activity) {
         ActivityResponse response = new ActivityResponse();
         response.setId(activity.getId());
@@ -92,18 +287,173 @@ public class ActivityService {
         return response;
     }
 
-    public List<ActivityResponse> getUserActivities(String userId) {
-        List<Activity> activities = activityRepository.findByUserId(userId);
-        return activities.stream()
+    /**
+     * Returns a user's activities in the hot tier. Older ones are read page by page with
+     * from/to ranges, see {@link #getOlderPageStart}.
+     */
+    public List<ActivityResponse> getUserActivities(String userId, String fields) {
+        Set<String> projection = parseFields(fields);
+        return activityRepository.findHotByUserId(userId, projection).stream()
                 .map(this::mapToResponse)
+                .map(response -> projection == null ? response : project(response, projection))
                 .collect(Collectors.toList());
+    }
 
+    /**
+     * Start of the hot window; activities that started earlier are archived by the nightly job.
+     */
+    public LocalDateTime getHotWindowStart() {
+        return LocalDateTime.now().minusDays(archiveAfterDays).truncatedTo(ChronoUnit.SECONDS);
     }
 
-    public ActivityResponse getActivityById(String activityId) {
-        return activityRepository.findById(activityId)
+    /**
+     * Returns the start of the page of activities before {@code pageStart}, spanning at most
+     * {@code activity.archive.page-months}, or empty if no archive reaches back that far.
+     */
+    public Optional<LocalDateTime> getOlderPageStart(LocalDateTime pageStart) {
+        NavigableSet<String> archives = activityRepository.findArchiveCollections();
+        if (archives.isEmpty()) {
+            return Optional.empty();
+        }
+        LocalDateTime oldest = ActivityArchiveRepositoryImpl.archiveMonth(archives.first()).atDay(1).atStartOfDay();
+        if (!oldest.isBefore(pageStart)) {
+            return Optional.empty();
+        }
+        LocalDateTime start = pageStart.minusMonths(archivePageMonths);
+        return Optional.of(start.isBefore(oldest) ? oldest : start);
+    }
+
+    /**
+     * Returns a user's activities that started in [from, to), reading the monthly archives
+     * when the range reaches back past the hot window.
+     */
+    public List<ActivityResponse> getUserActivities(String userId, String fields, LocalDateTime from, LocalDateTime to) {
+        if (from == null) {
+            return getUserActivities(userId, fields);
+        }
+        Set<String> projection = parseFields(fields);
+        LocalDateTime end = to != null ? to : LocalDateTime.now().plusDays(1);
+        return activityRepository.findByUserIdAndStartTimeInRange(userId, from, end).stream()
                 .map(this::mapToResponse)
-                .orElseThrow(() -> new RuntimeException("Activity not found with id: " + activityId ));
+                .map(response -> projection == null ? response : project(response, projection))
+                .collect(Collectors.toList());
+    }
 
+    public ActivityResponse getActivityById(String activityId) {
+        return getActivityById(activityId, null);
+    }
+
+    public ActivityResponse getActivityById(String activityId, String fields) {
+        Set<String> projection = parseFields(fields);
+        if (projection == null) {
+            return activityRepository.findByIdAcrossTiers(activityId)
+                    .map(this::mapToResponse)
+                    .orElseThrow(() -> new RuntimeException("Activity not found with id: " + activityId ));
+        }
+        Query query = new Query(where("_id").is(activityId));
+        query.fields().include(projection.toArray(String[]::new));
+        Activity activity = mongoTemplate.findOne(query, Activity.class);
+        if (activity == null) {
+            return activityRepository.findByIdAcrossTiers(activityId)
+                    .map(archived -> project(mapToResponse(archived), projection))
+                    .orElseThrow(() -> new RuntimeException("Activity not found with id: " + activityId));
+        }
+        // The query always returns _id, so the fieldset is applied here too, as for archived activities
+        return project(mapToResponse(activity), projection);
+    }
+
+    /**
+     * Applies a fieldset to a response, so every tier returns exactly the requested fields.
+     */
+    private ActivityResponse project(ActivityResponse full, Set<String> projection) {
+        ActivityResponse response = new ActivityResponse();
+        if (projection.contains("id")) response.setId(full.getId());
+        if (projection.contains("userId")) response.setUserId(full.getUserId());
+        if (projection.contains("type")) response.setType(full.getType());
+        if (projection.contains("duration")) response.setDuration(full.getDuration());
+        if (projection.contains("caloriesBurned")) response.setCaloriesBurned(full.getCaloriesBurned());
+        if (projection.contains("startTime")) response.setStartTime(full.getStartTime());
+        if (projection.contains("additionalMetrics")) response.setAdditionalMetrics(full.getAdditionalMetrics());
+        if (projection.contains("createdAt")) response.setCreatedAt(full.getCreatedAt());
+        if (projection.contains("updatedAt")) response.setUpdatedAt(full.getUpdatedAt());
+        return response;
+    }
+
+    /**
+     * Computes the ETag of a single activity from its last modification time, reading only the
+     * timestamps of a hot activity and falling back to the archives. Returns null if the activity
+     * does not exist.
+     */
+    public String getActivityEtag(String activityId, String fields) {
+        Query query = new Query(where("_id").is(activityId));
+        query.fields().include("updatedAt", "createdAt");
+        Activity activity = mongoTemplate.findOne(query, Activity.class);
+        if (activity == null) {
+            activity = activityRepository.findByIdAcrossTiers(activityId).orElse(null);
+        }
+        if (activity == null) {
+            return null;
+        }
+        return etag(activityId, lastModified(activity), fields);
+    }
+
+    /**
+     * Computes the ETag of a user's activity list from the number of activities and the
+     * latest modification time. Both come from the {userId, updatedAt} index, so checking
+     * for changes does not load any activity documents.
+     */
+    public String getUserActivitiesEtag(String userId, String fields) {
+        return getUserActivitiesEtag(userId, fields, null, null);
+    }
+
+    /**
+     * ETag of a date-ranged activity list. Archived activities are never modified, so the
+     * hot tier's count and latest update still detect every change; the range only keys the tag.
+     */
+    public String getUserActivitiesEtag(String userId, String fields, LocalDateTime from, LocalDateTime to) {
+        String range = from == null ? "" : "-" + Integer.toHexString((from + "/" + to).hashCode());
+        Query latest = new Query(where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "updatedAt"))
+                .limit(1);
+        latest.fields().include("updatedAt", "createdAt");
+        Activity activity = mongoTemplate.findOne(latest, Activity.class);
+        if (activity == null) {
+            return etag(userId + range, 0, fields);
+        }
+        long count = mongoTemplate.count(new Query(where("userId").is(userId)), Activity.class);
+        return etag(userId + "-" + count + range, lastModified(activity), fields);
+    }
+
+    private long lastModified(Activity activity) {
+        LocalDateTime time = activity.getUpdatedAt() != null ? activity.getUpdatedAt() : activity.getCreatedAt();
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+    }
+
+    private String etag(String base, long lastModified, String fields) {
+        String representation = fields == null || fields.isBlank() ? "full" : Integer.toHexString(fields.hashCode());
+        return "\"" + base + "-" + Long.toHexString(lastModified) + "-" + representation + "\"";
+    }
+
+    /**
+     * Parses a comma-separated fields parameter into the property names to project.
+     *
+     * @return null when all fields are requested
+     */
+    private Set<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> projection = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!SELECTABLE_FIELDS.contains(name)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field: " + name);
+            }
+            projection.add(name);
+        }
+        return projection.isEmpty() ? null : projection;
     }
 }
@@ -0,0 +1,161 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.IdempotencyRecord;
+import com.fitness.activityservice.repository.ActivityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Service handling Idempotency-Key reservations for activity creation.
+ *
+ * <p>A key is reserved by inserting a record keyed by user and key before the activity is
+ * written; the record also fixes the activity ID, so a retry that races the original request
+ * or arrives after a crash can find the activity it refers to. Completed keys are cached in a
+ * bounded in-memory LRU map so most replays skip MongoDB for the key lookup.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityRepository activityRepository;
+
+    @Value("${activity.idempotency.cache-size:10000}")
+    private int cacheSize;
+    @Value("${activity.idempotency.cache-ttl-minutes:60}")
+    private long cacheTtlMinutes;
+    @Value("${activity.idempotency.in-progress-timeout-seconds:30}")
+    private long inProgressTimeoutSeconds;
+
+    private final Map<String, CachedKey> completedKeys = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    /**
+     * Outcome of reserving a key: either a fresh activity ID to create, or a replay of an earlier one.
+     */
+    public record Reservation(String recordId, String activityId, boolean replay) {
+    }
+
+    private record CachedKey(String activityId, String fingerprint, LocalDateTime cachedAt) {
+    }
+
+    public Reservation reserve(String userId, String key, String fingerprint) {
+        String recordId = userId + ":" + key;
+
+        CachedKey cached = cachedKey(recordId);
+        if (cached != null) {
+            checkFingerprint(cached.fingerprint(), fingerprint, key);
+            return new Reservation(recordId, cached.activityId(), true);
+        }
+
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .id(recordId)
+                .activityId(new ObjectId().toHexString())
+                .fingerprint(fingerprint)
+                .createdAt(LocalDateTime.now())
+                .build();
+        try {
+            mongoTemplate.insert(record);
+            return new Reservation(recordId, record.getActivityId(), false);
+        } catch (DuplicateKeyException e) {
+            return resolveExisting(recordId, key, fingerprint);
+        }
+    }
+
+    public void complete(Reservation reservation, String fingerprint) {
+        mongoTemplate.updateFirst(new Query(where("_id").is(reservation.recordId())),
+                new Update().set("completed", true), IdempotencyRecord.class);
+        cache(reservation.recordId(), reservation.activityId(), fingerprint);
+    }
+
+    /**
+     * Marks a key whose activity was accepted into the ingest buffer. Until the flusher
+     * completes it, retries replay the queued activity instead of waiting or taking the key over.
+     */
+    public void markQueued(Reservation reservation) {
+        mongoTemplate.updateFirst(new Query(where("_id").is(reservation.recordId())
+                        .and("activityId").is(reservation.activityId())),
+                new Update().set("queued", true), IdempotencyRecord.class);
+    }
+
+    /**
+     * Frees a key after a failed attempt so the client can retry with it.
+     */
+    public void release(Reservation reservation) {
+        mongoTemplate.remove(new Query(where("_id").is(reservation.recordId())
+                .and("activityId").is(reservation.activityId())), IdempotencyRecord.class);
+    }
+
+    private Reservation resolveExisting(String recordId, String key, String fingerprint) {
+        IdempotencyRecord existing = mongoTemplate.findById(recordId, IdempotencyRecord.class);
+        if (existing == null) {
+            // Expired or released between our insert and lookup
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Idempotency key is being reused, retry the request");
+        }
+        checkFingerprint(existing.getFingerprint(), fingerprint, key);
+
+        if (existing.isCompleted() || existing.isQueued() || activityRepository.existsById(existing.getActivityId())) {
+            log.info("Replaying activity {} for idempotency key {}", existing.getActivityId(), key);
+            if (!existing.isQueued() || existing.isCompleted()) {
+                cache(recordId, existing.getActivityId(), existing.getFingerprint());
+            }
+            return new Reservation(recordId, existing.getActivityId(), true);
+        }
+
+        if (existing.getCreatedAt().isAfter(LocalDateTime.now().minusSeconds(inProgressTimeoutSeconds))) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A request with this idempotency key is in progress");
+        }
+
+        // The original attempt died before storing the activity; take the key over with a new
+        // activity ID so a leftover outbox record for the old ID can never publish twice
+        String activityId = new ObjectId().toHexString();
+        long updated = mongoTemplate.updateFirst(
+                new Query(where("_id").is(recordId).and("activityId").is(existing.getActivityId())),
+                new Update().set("activityId", activityId).set("createdAt", LocalDateTime.now()),
+                IdempotencyRecord.class).getModifiedCount();
+        if (updated == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A request with this idempotency key is in progress");
+        }
+        return new Reservation(recordId, activityId, false);
+    }
+
+    private void checkFingerprint(String stored, String fingerprint, String key) {
+        if (stored != null && !stored.equals(fingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency key " + key + " was already used with a different request");
+        }
+    }
+
+    private synchronized CachedKey cachedKey(String recordId) {
+        CachedKey cached = completedKeys.get(recordId);
+        if (cached != null && cached.cachedAt().isBefore(LocalDateTime.now().minusMinutes(cacheTtlMinutes))) {
+            completedKeys.remove(recordId);
+            return null;
+        }
+        return cached;
+    }
+
+    private synchronized void cache(String recordId, String activityId, String fingerprint) {
+        completedKeys.put(recordId, new CachedKey(activityId, fingerprint, LocalDateTime.now()));
+    }
+}
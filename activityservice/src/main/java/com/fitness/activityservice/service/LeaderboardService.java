@@ -0,0 +1,156 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.LeaderboardResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.LeaderboardMetric;
+import com.fitness.activityservice.model.RollupGranularity;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Service maintaining in-memory weekly and monthly leaderboards.
+ *
+ * <p>Each (period, window, metric, activity type) combination has its own {@link RankedIndex},
+ * updated on every tracked activity, so top-N and rank lookups are O(log n) without touching
+ * MongoDB. The weekly and monthly activity rollups act as the persisted snapshot: the
+ * indexes are rebuilt from them on startup and periodically afterwards, which recovers
+ * state after a restart and converges instances that each only see their own writes.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LeaderboardService {
+
+    private static final List<RollupGranularity> PERIODS = List.of(RollupGranularity.WEEK, RollupGranularity.MONTH);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Map<BoardKey, RankedIndex> boards = new ConcurrentHashMap<>();
+
+    /**
+     * Identifies one leaderboard; a null type means all activity types combined.
+     */
+    private record BoardKey(RollupGranularity period, LocalDate windowStart, LeaderboardMetric metric, ActivityType type) {
+    }
+
+    @PostConstruct
+    void load() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Failed to load leaderboards from rollups, starting empty", e);
+        }
+    }
+
+    public void record(Activity activity) {
+        LocalDateTime time = activity.getStartTime() != null ? activity.getStartTime() : activity.getCreatedAt();
+        if (time == null || activity.getUserId() == null) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        for (RollupGranularity period : PERIODS) {
+            LocalDate windowStart = period.bucketStart(time.toLocalDate());
+            if (!windowStart.equals(period.bucketStart(today))) {
+                // Only the current window is ranked in memory
+                continue;
+            }
+            for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+                long value = valueOf(activity, metric);
+                board(new BoardKey(period, windowStart, metric, null)).increment(activity.getUserId(), value);
+                if (activity.getType() != null) {
+                    board(new BoardKey(period, windowStart, metric, activity.getType()))
+                            .increment(activity.getUserId(), value);
+                }
+            }
+        }
+    }
+
+    public LeaderboardResponse getLeaderboard(RollupGranularity period, LeaderboardMetric metric,
+                                              ActivityType type, int limit, String userId) {
+        if (!PERIODS.contains(period)) {
+            throw new IllegalArgumentException("Leaderboards are only kept per week or month");
+        }
+        LocalDate windowStart = period.bucketStart(LocalDate.now());
+        RankedIndex index = boards.getOrDefault(new BoardKey(period, windowStart, metric, type), new RankedIndex());
+
+        LeaderboardResponse response = new LeaderboardResponse();
+        response.setPeriod(period);
+        response.setWindowStart(windowStart);
+        response.setMetric(metric);
+        response.setType(type);
+        response.setParticipants(index.size());
+        response.setEntries(index.top(limit).stream()
+                .map(entry -> new LeaderboardResponse.Entry(entry.rank(), entry.member(), entry.score()))
+                .toList());
+        if (userId != null) {
+            long rank = index.rankOf(userId);
+            if (rank > 0) {
+                response.setCaller(new LeaderboardResponse.Entry(rank, userId, index.scoreOf(userId)));
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Rebuilds the current windows from the persisted rollups and swaps them in.
+     * Boards for windows that have ended are dropped.
+     */
+    @Scheduled(fixedDelayString = "${leaderboard.refresh-interval-ms:300000}",
+            initialDelayString = "${leaderboard.refresh-interval-ms:300000}")
+    public void refresh() {
+        long started = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        Map<BoardKey, RankedIndex> rebuilt = new HashMap<>();
+
+        for (RollupGranularity period : PERIODS) {
+            LocalDate windowStart = period.bucketStart(today);
+            Query query = new Query(where("granularity").is(period).and("bucketStart").is(windowStart));
+            try (Stream<ActivityRollup> rollups = mongoTemplate.stream(query, ActivityRollup.class)) {
+                rollups.forEach(rollup -> {
+                    for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+                        rebuilt.computeIfAbsent(new BoardKey(period, windowStart, metric, null), key -> new RankedIndex())
+                                .set(rollup.getUserId(), metric == LeaderboardMetric.CALORIES
+                                        ? rollup.getCaloriesBurned() : rollup.getDuration());
+                        if (rollup.getByType() == null) {
+                            continue;
+                        }
+                        rollup.getByType().forEach((type, totals) -> rebuilt
+                                .computeIfAbsent(new BoardKey(period, windowStart, metric, type), key -> new RankedIndex())
+                                .set(rollup.getUserId(), metric == LeaderboardMetric.CALORIES
+                                        ? totals.getCaloriesBurned() : totals.getDuration()));
+                    }
+                });
+            }
+        }
+
+        boards.putAll(rebuilt);
+        boards.keySet().removeIf(key -> !key.windowStart().equals(key.period().bucketStart(today)));
+        log.info("Refreshed {} leaderboards from rollups in {} ms", rebuilt.size(), System.currentTimeMillis() - started);
+    }
+
+    private RankedIndex board(BoardKey key) {
+        return boards.computeIfAbsent(key, k -> new RankedIndex());
+    }
+
+    private long valueOf(Activity activity, LeaderboardMetric metric) {
+        Integer value = metric == LeaderboardMetric.CALORIES ? activity.getCaloriesBurned() : activity.getDuration();
+        return value != null ? value : 0;
+    }
+}
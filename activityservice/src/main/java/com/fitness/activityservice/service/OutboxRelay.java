@@ -0,0 +1,290 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.model.OutboxStatus;
+import com.fitness.activityservice.repository.ActivityRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Background relay that publishes pending outbox events to RabbitMQ.
+ * Claims a batch of events with a lease so several instances can run side by side,
+ * hands them to {@link ActivityEventPublisher} and marks the confirmed ones as sent.
+ * Up to {@code outbox.relay.max-pending-batches} batches are awaiting confirms at once; their
+ * leases are renewed before each wait, so a batch is never claimed by another instance meanwhile.
+ * Events that are not confirmed stay pending and are retried with exponential backoff, up to
+ * {@code outbox.relay.max-attempts}; after that they are marked FAILED and counted in
+ * {@code activity.outbox.failed}.
+ * SENT and DISCARDED events are removed by a TTL index on sentAt {@code outbox.retention-hours} after they finished.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityRepository activityRepository;
+    private final ActivityEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Value("${outbox.relay.batch-size:100}")
+    private int batchSize;
+    @Value("${outbox.relay.lease-seconds:30}")
+    private long leaseSeconds;
+    @Value("${outbox.relay.confirm-timeout-ms:20000}")
+    private long confirmTimeoutMs;
+    @Value("${outbox.relay.max-pending-batches:4}")
+    private int maxPendingBatches;
+    @Value("${outbox.relay.orphan-grace-seconds:60}")
+    private long orphanGraceSeconds;
+    @Value("${outbox.relay.max-attempts:20}")
+    private int maxAttempts;
+    @Value("${outbox.relay.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+    @Value("${outbox.relay.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+    @Value("${outbox.retention-hours:24}")
+    private long retentionHours;
+
+    /**
+     * Checks that the publisher's retries end within the confirm timeout and that the confirm timeout
+     * fits in a lease, then creates the TTL index expiring finished events. Only SENT and DISCARDED events have a sentAt,
+     * and a TTL index skips documents without the field, so pending events are never removed.
+     * A changed retention is applied by dropping the index.
+     */
+    @PostConstruct
+    void start() {
+        // Leases are renewed right before waiting for a batch's confirms, so one wait must fit in a lease
+        if (TimeUnit.SECONDS.toMillis(leaseSeconds) <= confirmTimeoutMs) {
+            throw new IllegalStateException("outbox.relay.lease-seconds (" + leaseSeconds
+                    + ") must exceed outbox.relay.confirm-timeout-ms (" + confirmTimeoutMs + ")");
+        }
+        // An event given up on while the publisher still retries it would be published again by the next run
+        if (confirmTimeoutMs <= eventPublisher.deliveryBudgetMs()) {
+            throw new IllegalStateException("outbox.relay.confirm-timeout-ms (" + confirmTimeoutMs
+                    + ") must exceed the publisher's confirm timeouts and retry delays ("
+                    + eventPublisher.deliveryBudgetMs() + " ms)");
+        }
+        ensureRetentionIndex();
+    }
+
+    private void ensureRetentionIndex() {
+        mongoTemplate.indexOps(OutboxEvent.class).createIndex(new Index()
+                .on("sentAt", Sort.Direction.ASC)
+                .named("finished_ttl_idx")
+                .expire(Duration.ofHours(retentionHours)));
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:500}")
+    public void relayPendingEvents() {
+        // Keep several batches awaiting confirms so publishing is not stalled by broker round trips
+        Deque<PublishedBatch> awaitingConfirm = new ArrayDeque<>();
+        try {
+            PublishedBatch batch;
+            do {
+                batch = publishBatch();
+                if (batch == null) {
+                    break;
+                }
+                awaitingConfirm.add(batch);
+                if (awaitingConfirm.size() >= maxPendingBatches) {
+                    resolveNext(awaitingConfirm);
+                }
+            } while (batch.claimed() == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox relay run failed, pending events will be retried", e);
+        } finally {
+            while (!awaitingConfirm.isEmpty()) {
+                resolveNext(awaitingConfirm);
+            }
+        }
+    }
+
+    /**
+     * Claims one batch of events and hands them to the publisher without waiting for confirms.
+     *
+     * @return the batch awaiting confirms, or null if nothing was pending
+     */
+    PublishedBatch publishBatch() throws InterruptedException {
+        List<OutboxEvent> events = claimBatch();
+        if (events.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Activity> activities = activityRepository
+                .findAllById(events.stream().map(OutboxEvent::getActivityId).toList())
+                .stream()
+                .collect(Collectors.toMap(Activity::getId, Function.identity()));
+
+        LocalDateTime orphanCutoff = LocalDateTime.now().minusSeconds(orphanGraceSeconds);
+        PublishedBatch batch = new PublishedBatch(events.size());
+
+        for (OutboxEvent event : events) {
+            batch.attempts().put(event.getId(), event.getAttempts());
+            Activity activity = activities.get(event.getActivityId());
+            if (activity == null) {
+                // The activity write may still be in flight; only give up once the grace period has passed
+                if (event.getCreatedAt().isBefore(orphanCutoff)) {
+                    log.warn("Discarding outbox event {} for missing activity {}", event.getId(), event.getActivityId());
+                    batch.discarded().add(event.getId());
+                } else {
+                    batch.failed().add(event.getId());
+                }
+                continue;
+            }
+            batch.confirms().put(event.getId(), eventPublisher.publish(event.getId(), activity, event.getLane()));
+        }
+        return batch;
+    }
+
+    /**
+     * Resolves the oldest batch. Waiting for the batches before it may have used up most of the
+     * leases, so the leases of all batches still awaiting confirms are renewed first.
+     */
+    private void resolveNext(Deque<PublishedBatch> awaitingConfirm) {
+        List<String> ids = new ArrayList<>();
+        for (PublishedBatch batch : awaitingConfirm) {
+            ids.addAll(batch.confirms().keySet());
+            ids.addAll(batch.discarded());
+            ids.addAll(batch.failed());
+        }
+        mongoTemplate.updateMulti(new Query(where("_id").in(ids).and("claimedBy").is(instanceId)),
+                new Update().set("leaseUntil", LocalDateTime.now().plusSeconds(leaseSeconds)),
+                OutboxEvent.class);
+        resolve(awaitingConfirm.poll());
+    }
+
+    /**
+     * Waits for the confirms of a published batch and records the outcome on its outbox events.
+     * Events that were not confirmed stay pending and are picked up by a later run.
+     */
+    void resolve(PublishedBatch batch) {
+        List<String> sent = new ArrayList<>();
+        List<String> failed = batch.failed();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        batch.confirms().forEach((eventId, confirm) -> {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                confirm.get(remaining, TimeUnit.NANOSECONDS);
+                sent.add(eventId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(eventId);
+            } catch (Exception e) {
+                log.warn("Outbox event {} was not confirmed by the broker: {}", eventId, e.getMessage());
+                failed.add(eventId);
+            }
+        });
+
+        LocalDateTime now = LocalDateTime.now();
+        updateClaimed(sent, new Update().set("status", OutboxStatus.SENT).set("sentAt", now));
+        updateClaimed(batch.discarded(), new Update().set("status", OutboxStatus.DISCARDED).set("sentAt", now));
+        recordFailures(failed, batch.attempts(), now);
+
+        log.debug("Outbox batch finished: {} sent, {} retried, {} discarded", sent.size(), failed.size(), batch.discarded().size());
+    }
+
+    /**
+     * Claims up to batchSize pending events whose lease is free or expired.
+     * Candidates are selected first and then claimed conditionally, so an event
+     * picked by another instance in between is simply skipped.
+     */
+    private List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria claimable = where("status").is(OutboxStatus.PENDING)
+                .orOperator(where("leaseUntil").is(null), where("leaseUntil").lt(now));
+
+        Query candidates = new Query(claimable).with(Sort.by("createdAt")).limit(batchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Criteria claimableIds = where("_id").in(ids).and("status").is(OutboxStatus.PENDING)
+                .orOperator(where("leaseUntil").is(null), where("leaseUntil").lt(now));
+        mongoTemplate.updateMulti(new Query(claimableIds),
+                new Update().set("claimedBy", instanceId).set("leaseUntil", now.plusSeconds(leaseSeconds)),
+                OutboxEvent.class);
+
+        return mongoTemplate.find(
+                new Query(where("_id").in(ids).and("claimedBy").is(instanceId).and("status").is(OutboxStatus.PENDING))
+                        .with(Sort.by("createdAt")),
+                OutboxEvent.class);
+    }
+
+    /**
+     * Keeps failed events leased until their backoff has passed, so they neither come back on
+     * the next run nor hold up newer events. Events out of attempts are marked FAILED.
+     */
+    private void recordFailures(List<String> ids, Map<String, Integer> attempts, LocalDateTime now) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxEvent.class);
+        for (String id : ids) {
+            int attempt = attempts.getOrDefault(id, 0) + 1;
+            Update update = new Update().set("attempts", attempt).unset("claimedBy");
+            if (attempt >= maxAttempts) {
+                log.error("Outbox event {} failed {} times, marking it FAILED", id, attempt);
+                meterRegistry.counter("activity.outbox.failed").increment();
+                update.set("status", OutboxStatus.FAILED).unset("leaseUntil");
+            } else {
+                long backoffMs = Math.min(retryBackoffMs << Math.min(attempt - 1, 20), maxBackoffMs);
+                update.set("leaseUntil", now.plusNanos(backoffMs * 1_000_000));
+            }
+            bulk.updateOne(new Query(where("_id").is(id).and("claimedBy").is(instanceId)), update);
+        }
+        bulk.execute();
+    }
+
+    private void updateClaimed(List<String> ids, Update update) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(new Query(where("_id").in(ids).and("claimedBy").is(instanceId)),
+                update.unset("claimedBy").unset("leaseUntil"),
+                OutboxEvent.class);
+    }
+
+    record PublishedBatch(int claimed, Map<String, CompletableFuture<Void>> confirms,
+                          List<String> discarded, List<String> failed, Map<String, Integer> attempts) {
+        PublishedBatch(int claimed) {
+            this(claimed, new LinkedHashMap<>(), new ArrayList<>(), new ArrayList<>(), new HashMap<>());
+        }
+    }
+}
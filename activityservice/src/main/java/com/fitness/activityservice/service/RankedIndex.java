@@ -0,0 +1,183 @@
+package com.fitness.activityservice.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Order-statistic skip list holding one score per member.
+ *
+ * <p>Members are ordered by score descending, then by member ID ascending, so rank 1 is the
+ * highest score. Every forward pointer stores how many level-0 nodes it skips (its span),
+ * which makes score updates, rank lookups and top-N reads O(log n) (plus N for top-N).
+ * All methods are synchronized; callers needing bulk loads should build a new instance
+ * and swap it in.</p>
+ */
+class RankedIndex {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private final Node head = new Node(MAX_LEVEL, 0, null);
+    private final Map<String, Long> scores = new HashMap<>();
+    private int level = 1;
+    private int size;
+
+    record Entry(long rank, String member, long score) {
+    }
+
+    synchronized void increment(String member, long delta) {
+        Long current = scores.get(member);
+        set(member, current == null ? delta : current + delta);
+    }
+
+    synchronized void set(String member, long score) {
+        Long current = scores.put(member, score);
+        if (current != null) {
+            if (current == score) {
+                return;
+            }
+            delete(member, current);
+        }
+        insert(member, score);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized Long scoreOf(String member) {
+        return scores.get(member);
+    }
+
+    /**
+     * Returns the 1-based rank of a member, or -1 if the member has no score.
+     */
+    synchronized long rankOf(String member) {
+        Long score = scores.get(member);
+        if (score == null) {
+            return -1;
+        }
+        long rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], score, member) <= 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && x.member.equals(member)) {
+                return rank;
+            }
+        }
+        return -1;
+    }
+
+    synchronized List<Entry> top(int limit) {
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(limit, size)));
+        Node x = head.next[0];
+        long rank = 1;
+        while (x != null && entries.size() < limit) {
+            entries.add(new Entry(rank++, x.member, x.score));
+            x = x.next[0];
+        }
+        return entries;
+    }
+
+    private void insert(String member, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        long[] rank = new long[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && compare(x.next[i], score, member) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(nodeLevel, score, member);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    private void delete(String member, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], score, member) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        x = x.next[0];
+        if (x == null || x.score != score || !x.member.equals(member)) {
+            return;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+    }
+
+    /**
+     * Compares a node with a (score, member) position: negative if the node ranks before it.
+     */
+    private static int compare(Node node, long score, String member) {
+        if (node.score != score) {
+            return node.score > score ? -1 : 1;
+        }
+        return node.member.compareTo(member);
+    }
+
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static final class Node {
+        private final long score;
+        private final String member;
+        private final Node[] next;
+        private final long[] span;
+
+        private Node(int level, long score, String member) {
+            this.score = score;
+            this.member = member;
+            this.next = new Node[level];
+            this.span = new long[level];
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.fitness.activityservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RankedIndexTests {
+
+	@Test
+	void ranksMatchSortedOrderAfterRandomUpdates() {
+		RankedIndex index = new RankedIndex();
+		Map<String, Long> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 20_000; i++) {
+			String member = "user-" + random.nextInt(2_000);
+			long delta = random.nextInt(500);
+			index.increment(member, delta);
+			expected.merge(member, delta, Long::sum);
+		}
+
+		List<Map.Entry<String, Long>> sorted = expected.entrySet().stream()
+				.sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+						.thenComparing(Map.Entry.comparingByKey()))
+				.toList();
+
+		assertEquals(sorted.size(), index.size());
+		for (int rank = 1; rank <= sorted.size(); rank++) {
+			assertEquals(rank, index.rankOf(sorted.get(rank - 1).getKey()));
+		}
+		List<RankedIndex.Entry> top = index.top(10);
+		for (int i = 0; i < top.size(); i++) {
+			assertEquals(sorted.get(i).getKey(), top.get(i).member());
+			assertEquals(sorted.get(i).getValue(), top.get(i).score());
+		}
+		assertEquals(-1, index.rankOf("missing"));
+	}
+
+	@Test
+	void topReturnsNothingForNonPositiveLimits() {
+		RankedIndex index = new RankedIndex();
+		index.increment("user-1", 10);
+
+		assertEquals(List.of(), index.top(0));
+		assertEquals(List.of(), index.top(-1));
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.fitness.aiservice.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fitness.aiservice.model.Activity;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Compact binary message converter for activity events.
+ *
+ * <p>Events are encoded with Jackson Smile, a binary JSON encoding, and activities are written
+ * positionally as arrays in the field order of {@link ActivityEventSchema}, so field names are
+ * not repeated in every message. Messages carry the
+ * {@value #CONTENT_TYPE} content type and an {@value #SCHEMA_VERSION_HEADER} header instead of
+ * the {@code __TypeId__} class-name header, so consumers bind the payload to their own
+ * listener parameter type. Keep this class in sync with the copy in activityservice.</p>
+ *
+ * <p>Schema rules: new fields may only be appended to the end of the property order (trailing
+ * values unknown to a consumer are ignored); reordering, removing a field or changing its type
+ * requires bumping {@link #SCHEMA_VERSION}. Consumers reject messages with a version newer than
+ * they understand.</p>
+ */
+public class ActivityEventMessageConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+    public static final String SCHEMA_VERSION_HEADER = "x-schema-version";
+    public static final int SCHEMA_VERSION = 1;
+
+    private final ObjectMapper objectMapper = SmileMapper.builder()
+            .findAndAddModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .addMixIn(Activity.class, ActivityEventSchema.class)
+            .build();
+
+    /**
+     * Version 1 of the activity event layout.
+     */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"id", "userId", "type", "duration", "caloriesBurned", "startTime",
+            "additionalMetrics", "createdAt", "updatedAt"})
+    private abstract static class ActivityEventSchema {
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(object);
+            messageProperties.setContentType(CONTENT_TYPE);
+            messageProperties.setContentLength(body.length);
+            messageProperties.setHeader(SCHEMA_VERSION_HEADER, SCHEMA_VERSION);
+            return new Message(body, messageProperties);
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to encode activity event", e);
+        }
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Object version = properties.getHeader(SCHEMA_VERSION_HEADER);
+        if (version instanceof Number number && number.intValue() > SCHEMA_VERSION) {
+            throw new MessageConversionException("Unsupported activity event schema version: " + version);
+        }
+        Type targetType = properties.getInferredArgumentType();
+        if (targetType == null) {
+            throw new MessageConversionException("No target type available for " + CONTENT_TYPE + " message");
+        }
+        try {
+            JavaType javaType = objectMapper.constructType(targetType);
+            return objectMapper.readValue(message.getBody(), javaType);
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to decode activity event", e);
+        }
+    }
+}
@@ -2,14 +2,21 @@ package com.fitness.aiservice.config;
 
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMqConfig {
 
@@ -23,6 +30,15 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
+    @Value("${rabbitmq.queue.backfill-name:activity.backfill.queue}")
+    private String backfillQueue;
+
+    @Value("${rabbitmq.routing.backfill-key:activity.backfill}")
+    private String backfillRoutingKey;
+
+    @Value("${rabbitmq.retry.delays-ms:5000,30000,120000}")
+    private List<Long> retryDelaysMs;
+
     /**
      * Creates a durable queue for storing messages.
      * Durable queues survive broker restarts.
@@ -64,12 +80,70 @@ public class RabbitMqConfig {
     }
 
     /**
-     * Configures JSON message converter for RabbitTemplate.
-     * Converts Java objects to JSON when sending messages
-     * and JSON back to Java objects when receiving.
+     * Creates the durable queue of the backfill lane, consumed by its own listener so historical
+     * activities never queue ahead of live ones.
+     */
+    @Bean
+    public Queue activityBackfillQueue() {
+        return new Queue(backfillQueue, true);
+    }
+
+    /**
+     * Binds the backfill queue to the exchange with the backfill routing key.
+     */
+    @Bean
+    public Binding activityBackfillBinding(Queue activityBackfillQueue, DirectExchange activityExchange) {
+        return BindingBuilder
+                .bind(activityBackfillQueue)
+                .to(activityExchange)
+                .with(backfillRoutingKey);
+    }
+
+    /**
+     * Declares the retry topology of the live and backfill queues.
+     *
+     * <p>Each retry tier is a queue without consumers whose messages expire after the tier's delay
+     * and are dead-lettered back to the queue they came from through the default exchange, so a
+     * failed message waits on the broker instead of holding a consumer thread and keeps its lane.
+     * Messages that fail in the last tier go to the lane's parking-lot queue until they are
+     * replayed.</p>
+     */
+    @Bean
+    public Declarables activityRetryDeclarables() {
+        List<Declarable> declarables = new ArrayList<>();
+        for (String laneQueue : List.of(queue, backfillQueue)) {
+            for (int tier = 1; tier <= retryDelaysMs.size(); tier++) {
+                declarables.add(QueueBuilder.durable(retryQueueName(laneQueue, tier))
+                        .ttl(retryDelaysMs.get(tier - 1).intValue())
+                        .deadLetterExchange("")
+                        .deadLetterRoutingKey(laneQueue)
+                        .build());
+            }
+            declarables.add(QueueBuilder.durable(parkingLotQueueName(laneQueue)).build());
+        }
+        return new Declarables(declarables);
+    }
+
+    /** Name of the delay queue for the given retry tier, starting at 1 */
+    public static String retryQueueName(String queue, int tier) {
+        return queue + ".retry." + tier;
+    }
+
+    /** Name of the queue holding messages that failed every retry tier */
+    public static String parkingLotQueueName(String queue) {
+        return queue + ".parking-lot";
+    }
+
+    /**
+     * Configures the message converter for incoming activity events.
+     * Picks the decoder by the message content type, so compact Smile events
+     * and legacy JSON events (with or without __TypeId__ headers) are both readable.
      */
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter activityEventMessageConverter() {
+        ContentTypeDelegatingMessageConverter converter =
+                new ContentTypeDelegatingMessageConverter(new Jackson2JsonMessageConverter());
+        converter.addDelegate(ActivityEventMessageConverter.CONTENT_TYPE, new ActivityEventMessageConverter());
+        return converter;
     }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.fitness.aiservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration class for scheduled background jobs.
+ * Enables the listener autoscaler and other periodic tasks.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,34 @@
+package com.fitness.aiservice.controller;
+
+import com.fitness.aiservice.service.ActivityRetryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Inspects and replays activity messages that failed every retry tier.
+ * Admin endpoints; the gateway only routes them for the admin role.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/recommendations/parking-lot")
+public class ParkingLotController {
+
+    private final ActivityRetryService retryService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Long>> getParkedCount() {
+        return ResponseEntity.ok(Map.of("parked", retryService.parkedCount()));
+    }
+
+    @PostMapping("/replay")
+    public ResponseEntity<Map<String, Integer>> replay(@RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(Map.of("replayed", retryService.replayParked(limit)));
+    }
+}
@@ -0,0 +1,11 @@
+package com.fitness.aiservice.model;
+
+/**
+ * Enum representing the lane an activity message arrives in.
+ * LIVE messages belong to workouts that just happened and a user may be waiting for;
+ * BACKFILL messages belong to historical workouts, e.g. from a bulk import.
+ */
+public enum ActivityLane {
+    LIVE,
+    BACKFILL
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -19,6 +20,8 @@ import java.util.List;
 public class Recommendation {
     @Id
     private String id;
+    /** Indexed because every delivery looks up the earlier answer for its activity */
+    @Indexed
     private String activityId;
     private String userId;
     private String activityType;
@@ -26,6 +29,8 @@ public class Recommendation {
     private List<String> improvements;
     private List<String> suggestions;
     private List<String> safety;
+    /** True while a streamed answer is still arriving and some sections may be empty */
+    private boolean partial;
 
     @CreatedDate
     private LocalDateTime createdAt;
@@ -0,0 +1,41 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Entity class representing a cached AI analysis for one activity feature key.
+ * Maps to 'recommendation_cache' collection in MongoDB.
+ * A TTL index removes entries once expiresAt has passed.
+ */
+@Document(collection = "recommendation_cache")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationCacheEntry {
+
+    @Id
+    private String key;
+    private String recommendation;
+    private List<String> improvements;
+    private List<String> suggestions;
+    private List<String> safety;
+    /** Tokens the AI request for this analysis consumed, counted as avoided on every hit */
+    private long tokens;
+    private long hits;
+    private LocalDateTime createdAt;
+    @Indexed(name = "recommendation_cache_hit_idx")
+    private LocalDateTime lastHitAt;
+    @Indexed(name = "recommendation_cache_ttl_idx", expireAfter = "0s")
+    private LocalDateTime expiresAt;
+
+}
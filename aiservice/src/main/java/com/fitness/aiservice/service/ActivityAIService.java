@@ -1,35 +1,38 @@
 package com.fitness.aiservice.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fitness.aiservice.model.Activity;
 import com.fitness.aiservice.model.Recommendation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service responsible for generating AI-powered fitness recommendations based on user activities.
  * 
- * <p>This service acts as a bridge between the application and the Gemini AI service,
- * processing activity data and transforming AI responses into structured recommendations.</p>
+ * <p>This service acts as a bridge between the application and the AI providers,
+ * processing activity data and transforming AI responses into structured recommendations.
+ * Single answers go through {@link LlmRouter}; streamed answers always come from Gemini.</p>
  * 
  * <p>Key Responsibilities:
  * <ul>
  *   <li>Generate prompts for the AI based on activity data</li>
  *   <li>Process AI responses and extract structured recommendations</li>
- *   <li>Handle errors and retries for AI service calls</li>
+ *   <li>Handle errors of AI service calls</li>
  *   <li>Transform raw AI responses into application domain objects</li>
  * </ul>
  * 
  * @see GeminiService
+ * @see LlmRouter
+ * @see RecommendationEngine
  * @see Recommendation
  * @see Activity
  */
@@ -38,22 +41,30 @@ import java.util.*;
 @RequiredArgsConstructor
 public class ActivityAIService {
     
-    /** Service for interacting with the Gemini AI API */
+    /** Service for interacting with the Gemini AI API, used for streamed answers */
     private final GeminiService geminiService;
+
+    /** Picks the AI provider for each single request */
+    private final LlmRouter llmRouter;
+
+    /** Analyses of near-identical activities, reused instead of calling the AI again */
+    private final RecommendationCache recommendationCache;
+
+    /** Answers in-process when the AI response holds no analysis */
+    private final RecommendationEngine localEngine;
     
-    /** JSON object mapper for parsing AI responses */
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /** Creates the streaming parsers that read AI responses */
+    private final JsonFactory jsonFactory = new JsonFactory();
 
-    // Maximum number of retries for AI service calls
-    private static final int MAX_RETRY_ATTEMPTS = 3;
-    private static final long RETRY_DELAY_MS = 1000;
+    /** Reads the analysis JSON written by the AI into recommendations */
+    private final RecommendationParser recommendationParser = new RecommendationParser(jsonFactory);
 
     /**
      * Generates a personalized fitness recommendation based on the provided activity data.
      * 
      * <p>This method orchestrates the recommendation generation process by:
      * 1. Creating a detailed prompt for the AI
-     * 2. Sending the prompt to the Gemini AI service
+     * 2. Sending the prompt to the AI provider chosen by the router
      * 3. Processing and validating the AI response
      * 4. Converting the response into a structured Recommendation object</p>
      * 
@@ -61,23 +72,23 @@ public class ActivityAIService {
      * @return A Recommendation object containing AI-generated fitness advice
      * @throws IllegalStateException if the AI service returns an invalid or empty response
      */
-    @Retryable(
-        value = {Exception.class},
-        maxAttempts = MAX_RETRY_ATTEMPTS,
-        backoff = @Backoff(delay = RETRY_DELAY_MS, multiplier = 2.0)
-    )
     public Recommendation generateRecommendation(Activity activity) {
         Objects.requireNonNull(activity, "Activity cannot be null");
         log.debug("Generating recommendation for activity: {}", activity.getId());
-        
+
+        Optional<Recommendation> cached = recommendationCache.lookup(activity);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         try {
             String prompt = createPromptForActivity(activity);
             log.trace("Generated AI prompt for activity {}: {}", activity.getId(), prompt);
             
-            String aiResponse = geminiService.getAnswer(prompt);
+            LlmProvider.Answer<Recommendation> answer = llmRouter.getAnswer(prompt, recommendationParser::parse);
             log.debug("Received AI response for activity: {}", activity.getId());
             
-            return processAiResponse(activity, aiResponse);
+            return toRecommendation(activity, answer);
             
         } catch (Exception e) {
             log.error("Failed to generate recommendation for activity: " + activity.getId(), e);
@@ -86,139 +97,180 @@ public class ActivityAIService {
     }
 
     /**
-     * Processes the raw AI response and converts it into a structured Recommendation object.
-     * 
-     * <p>This method handles the parsing and validation of the AI response, extracting
-     * the relevant information and mapping it to the Recommendation model.</p>
-     * 
-     * @param activity The original activity that the recommendation is for
-     * @param aiResponse The raw JSON response from the AI service
-     * @return A populated Recommendation object
-     * @throws JsonProcessingException if the AI response cannot be parsed
-     * @throws IllegalStateException if the response is missing required fields
+     * Generates a recommendation from a streamed AI response, handing it out as it fills in.
+     *
+     * <p>{@code onUpdate} receives the same instance several times: as soon as the analysis
+     * section is complete, after each of improvements, suggestions and safety, and a last time
+     * once the answer is complete. Until then {@link Recommendation#isPartial()} is true and
+     * sections that have not arrived are empty. If the answer cannot be parsed, the sections that
+     * did arrive are kept and the rest get the same defaults as {@link #generateRecommendation}.
+     * Without an analysis the local engine's recommendation is used.</p>
+     *
+     * @param activity The activity data to generate recommendations for
+     * @param onUpdate Receives the recommendation each time a section is added
+     * @return the complete recommendation, as also passed to the last update
+     * @throws IllegalStateException if the AI service call fails
      */
-    private Recommendation processAiResponse(Activity activity, String aiResponse) 
-            throws JsonProcessingException {
-        
-        if (!StringUtils.hasText(aiResponse)) {
-            throw new IllegalStateException("Empty response received from AI service");
-        }
-
-        log.debug("Processing AI response for activity: {}", activity.getId());
-        
-        try {
-            // Parse the outer JSON response
-            JsonNode rootNode = objectMapper.readTree(aiResponse);
-            
-            // Navigate to the text content containing the JSON response
-            String jsonContent = rootNode.path("candidates")
-                .path(0)
-                .path("content")
-                .path("parts")
-                .path(0)
-                .path("text")
-                .asText()
-                .replaceAll("```json\\n|", "")
-                .replaceAll("\\n```", "")
-                .trim();
-
-            log.trace("Extracted JSON content from AI response: {}", jsonContent);
-            
-            // Parse the inner JSON content
-            JsonNode analysisJson = objectMapper.readTree(jsonContent);
-            JsonNode analysisNode = analysisJson.path("analysis");
-
-            StringBuilder fullAnalysis = new StringBuilder();
-            addAnalysisSection(fullAnalysis, analysisNode, "overall", "Overall:");
-            addAnalysisSection(fullAnalysis, analysisNode, "pace", "Pace:");
-            addAnalysisSection(fullAnalysis, analysisNode, "heartRate", "Heart Rate:");
-            addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned", "Calories:");
-
-            List<String> improvements = extractImprovements(analysisJson.path("improvements"));
-            List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
-            List<String> safety = extractSafetyGuidelines(analysisJson.path("safety"));
-
-            return Recommendation.builder()
-                    .activityId(activity.getId())
-                    .userId(activity.getUserId())
-                    .activityType(activity.getType().name())// Here as well
-                    .recommendation(fullAnalysis.toString().trim())
-                    .improvements(improvements)
-                    .suggestions(suggestions)
-                    .safety(safety)
-                    .createdAt(LocalDateTime.now())
-                    .build();
+    public Recommendation streamRecommendation(Activity activity, Consumer<Recommendation> onUpdate) {
+        Objects.requireNonNull(activity, "Activity cannot be null");
+        log.debug("Streaming recommendation for activity: {}", activity.getId());
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return createDefaultRecommendation(activity);
+        Optional<Recommendation> cached = recommendationCache.lookup(activity);
+        if (cached.isPresent()) {
+            onUpdate.accept(cached.get());
+            return cached.get();
         }
-    }
 
-    private Recommendation createDefaultRecommendation(Activity activity) {
-        return Recommendation.builder()
+        Recommendation recommendation = Recommendation.builder()
                 .activityId(activity.getId())
                 .userId(activity.getUserId())
-                .activityType(activity.getType().name()) // Check needed here
-                .recommendation("Unable to generate detailed analysis")
-                .improvements(Collections.singletonList("Continue with your current routine"))
-                .suggestions(Collections.singletonList("Consider consulting a fitness professional"))
-                .safety(Arrays.asList(
-                        "Always warm up before exercise",
-                        "Stay hydrated",
-                        "Listen to your body"
-                ))
+                .activityType(activity.getType().name())
+                .improvements(List.of())
+                .suggestions(List.of())
+                .safety(List.of())
+                .partial(true)
                 .createdAt(LocalDateTime.now())
                 .build();
+        long tokens = 0;
+        boolean parsed = false;
+        try (Stream<JsonNode> chunks = geminiService.streamAnswer(createPromptForActivity(activity))) {
+            StreamingRecommendationParser parser = new StreamingRecommendationParser(jsonFactory,
+                    (section, value) -> applySection(recommendation, section, value, onUpdate));
+            Iterator<JsonNode> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                JsonNode chunk = iterator.next();
+                tokens = Math.max(tokens, totalTokens(chunk));
+                parser.feed(candidateText(chunk));
+            }
+            parsed = parser.isFinished();
+        } catch (IOException e) {
+            log.warn("Could not parse streamed AI response for activity {}: {}", activity.getId(), e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to stream recommendation for activity: " + activity.getId(), e);
+            throw new IllegalStateException("Failed to generate AI recommendation", e);
+        }
+
+        completeRecommendation(activity, recommendation, parsed, tokens);
+        onUpdate.accept(recommendation);
+        return recommendation;
     }
 
-    private List<String> extractSafetyGuidelines(JsonNode safetyNode) {
-        List<String> safety = new ArrayList<>();
-        if (safetyNode.isArray()) {
-            safetyNode.forEach(item -> safety.add(item.asText()));
+    /**
+     * Reads one completed top-level section of a streamed answer into the recommendation.
+     */
+    private void applySection(Recommendation recommendation, String section, JsonParser value,
+                              Consumer<Recommendation> onUpdate) throws IOException {
+        // Sections are only worth showing once the analysis is there
+        if (recommendationParser.readField(value, section, recommendation) && recommendation.getRecommendation() != null) {
+            onUpdate.accept(recommendation);
         }
-        return safety.isEmpty() ?
-                Collections.singletonList("Follow general safety guidelines") :
-                safety;
     }
 
-    private List<String> extractSuggestions(JsonNode suggestionsNode) {
-        List<String> suggestions = new ArrayList<>();
-        if (suggestionsNode.isArray()) {
-            suggestionsNode.forEach(suggestion -> {
-                String workout = suggestion.path("workout").asText();
-                String description = suggestion.path("description").asText();
-                suggestions.add(String.format("%s: %s", workout, description));
-            });
-        }
-        return suggestions.isEmpty() ?
-                Collections.singletonList("No specific suggestions provided") :
-                suggestions;
+    private Recommendation toRecommendation(Activity activity, LlmProvider.Answer<Recommendation> answer) {
+        Recommendation recommendation = answer.value() == null ? new Recommendation() : answer.value();
+        return completeRecommendation(activity, recommendation, !recommendation.isPartial(), answer.totalTokens());
     }
 
-    private List<String> extractImprovements(JsonNode improvementsNode) {
-        List<String> improvements = new ArrayList<>();
-        if (improvementsNode.isArray()) {
-            improvementsNode.forEach(improvement -> {
-                String area = improvement.path("area").asText();
-                String detail = improvement.path("recommendation").asText();
-                improvements.add(String.format("%s: %s", area, detail));
-            });
+    /**
+     * Adds the activity to a parsed recommendation and gives every missing section its default.
+     * Without an analysis the whole recommendation is the local engine's. Analyses that were read
+     * completely are cached.
+     */
+    private Recommendation completeRecommendation(Activity activity, Recommendation recommendation,
+                                                  boolean complete, long tokens) {
+        boolean analyzed = recommendation.getRecommendation() != null;
+        if (!analyzed) {
+            Recommendation fallback = localEngine.recommend(activity);
+            recommendation.setRecommendation(fallback.getRecommendation());
+            recommendation.setImprovements(fallback.getImprovements());
+            recommendation.setSuggestions(fallback.getSuggestions());
+            recommendation.setSafety(fallback.getSafety());
         }
-        return improvements.isEmpty() ?
-                Collections.singletonList("No specific improvements provided") :
-                improvements;
+        RecommendationParser.fillMissingSections(recommendation);
+        recommendation.setActivityId(activity.getId());
+        recommendation.setUserId(activity.getUserId());
+        recommendation.setActivityType(activity.getType().name());
+        if (recommendation.getCreatedAt() == null) {
+            recommendation.setCreatedAt(LocalDateTime.now());
+        }
+        recommendation.setPartial(false);
+        if (analyzed && complete) {
+            recommendationCache.store(activity, recommendation, tokens);
+        }
+        return recommendation;
     }
 
-    private void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNode, String key, String prefix) {
-        if (!analysisNode.path(key).isMissingNode()) {
-            fullAnalysis.append(prefix)
-                    .append(analysisNode.path(key).asText())
-                    .append("\n\n");
+    /**
+     * Generates recommendations for several activities with a single AI request.
+     *
+     * <p>The prompt carries the format instructions once and asks for an array of analyses
+     * keyed by activity ID. Activities whose analysis is missing or cannot be parsed are left
+     * out of the result, so the caller can fall back to {@link #generateRecommendation}.</p>
+     *
+     * @param activities The activities to analyze together
+     * @return recommendations by activity ID, for the activities whose analysis could be parsed
+     * @throws IllegalStateException if the AI service call itself fails
+     */
+    public Map<String, Recommendation> generateRecommendations(List<Activity> activities) {
+        LlmProvider.Answer<List<Recommendation>> answer;
+        try {
+            answer = llmRouter.getAnswer(createBatchPromptForActivities(activities), recommendationParser::parseAll);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to generate AI recommendations for " + activities.size() + " activities", e);
+        }
+
+        Map<String, Recommendation> recommendations = new HashMap<>();
+        if (answer.value().isEmpty()) {
+            log.warn("Batched AI response for {} activities holds no analyses", activities.size());
+            return recommendations;
+        }
+
+        // Token usage is reported per request; each activity is charged an equal share
+        long tokensPerActivity = answer.totalTokens() / activities.size();
+        Map<String, Activity> byId = new HashMap<>();
+        activities.forEach(activity -> byId.put(activity.getId(), activity));
+        for (Recommendation parsed : answer.value()) {
+            Activity activity = byId.get(parsed.getActivityId());
+            if (activity == null || parsed.getRecommendation() == null) {
+                continue;
+            }
+            recommendations.put(activity.getId(), completeRecommendation(activity, parsed, true, tokensPerActivity));
         }
+        return recommendations;
+    }
+
+    /**
+     * Returns a recommendation built in-process by the local engine, without calling the AI.
+     * It serves as the instant first answer and as the fallback while the AI budget is used up.
+     */
+    public Recommendation localRecommendation(Activity activity) {
+        return localEngine.recommend(activity);
     }
 
-    private String createPromptForActivity(Activity activity) {
+    /**
+     * Returns a cached recommendation for an activity without calling the AI, if one exists.
+     */
+    public Optional<Recommendation> cachedRecommendation(Activity activity) {
+        return recommendationCache.lookup(activity);
+    }
+
+    private static String candidateText(JsonNode rootNode) {
+        // Navigate to the text content containing the JSON response
+        return rootNode
+                .path("candidates")
+                .path(0)
+                .path("content")
+                .path("parts")
+                .path(0)
+                .path("text")
+                .asText();
+    }
+
+    private static long totalTokens(JsonNode rootNode) {
+        return rootNode.path("usageMetadata").path("totalTokenCount").asLong(0);
+    }
+
+    String createPromptForActivity(Activity activity) {
         return String.format("""
         Analyze this fitness activity and provide detailed recommendations in the following EXACT JSON format:
         {
@@ -261,4 +313,60 @@ public class ActivityAIService {
                 activity.getAdditionalMetrics()
         );
     }
-}
\ No newline at end of file
+
+    String createBatchPromptForActivities(List<Activity> activities) {
+        StringBuilder prompt = new StringBuilder("""
+        Analyze each of the following fitness activities and provide detailed recommendations.
+        Respond with a JSON array containing exactly one element per activity, in the following EXACT format:
+        [
+          {
+            "activityId": "The Activity ID given below",
+            "analysis": {
+              "overall": "Overall analysis here",
+              "pace": "Pace analysis here",
+              "heartRate": "Heart rate analysis here",
+              "caloriesBurned": "Calories analysis here"
+            },
+            "improvements": [
+              {
+                "area": "Area name",
+                "recommendation": "Detailed recommendation"
+              }
+            ],
+            "suggestions": [
+              {
+                "workout": "Workout name",
+                "description": "Detailed workout description"
+              }
+            ],
+            "safety": [
+              "Safety point 1",
+              "Safety point 2"
+            ]
+          }
+        ]
+
+        Analyze these activities:
+        """);
+        for (Activity activity : activities) {
+            prompt.append(String.format("""
+        Activity ID: %s
+        Activity Type: %s
+        Duration: %d minutes
+        Calories Burned: %d
+        Additional Metrics: %s
+
+        """,
+                    activity.getId(),
+                    activity.getType(),
+                    activity.getDuration(),
+                    activity.getCaloriesBurned(),
+                    activity.getAdditionalMetrics()));
+        }
+        prompt.append("""
+        Provide detailed analysis focusing on performance, improvements, next workout suggestions, and safety guidelines.
+        Ensure the response follows the EXACT JSON format shown above and analyzes every activity separately.
+        """);
+        return prompt.toString();
+    }
+}
@@ -1,34 +1,41 @@
 package com.fitness.aiservice.service;
 
 import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
 import com.fitness.aiservice.model.Recommendation;
 import com.fitness.aiservice.repository.RecommendationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service responsible for listening to activity messages from RabbitMQ and processing them
  * to generate AI-powered fitness recommendations.
  * 
  * <p>This service acts as the entry point for processing fitness activities asynchronously.
- * It consumes messages from a configured RabbitMQ queue, processes them using the AI service,
- * and persists the generated recommendations to MongoDB.</p>
+ * It consumes messages from the live and backfill queues, processes them using the AI service,
+ * and persists the generated recommendations to MongoDB. Each queue has its own listener
+ * container, so {@link ListenerAutoscaler} can give live activities most of the consumers.</p>
  * 
  * <p>Key Responsibilities:
  * <ul>
  *   <li>Consume activity messages from RabbitMQ</li>
  *   <li>Coordinate the recommendation generation process</li>
- *   <li>Handle message processing failures with retry mechanism</li>
+ *   <li>Save the local engine's answer first, or when the AI budget is used up</li>
+ *   <li>Hand failed messages to the broker-side retry tiers</li>
  *   <li>Persist recommendations to the database</li>
  * </ul>
  * 
+ * @see RecommendationBatcher
  * @see ActivityAIService
  * @see RecommendationRepository
  */
@@ -36,59 +43,169 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityMessageListener {
+
+    /** ID of the live listener container, used by {@link ListenerAutoscaler} to adjust it at runtime */
+    public static final String LISTENER_ID = "activityListener";
+
+    /** ID of the backfill listener container, used by {@link ListenerAutoscaler} to adjust it at runtime */
+    public static final String BACKFILL_LISTENER_ID = "activityBackfillListener";
     
-    /** Service responsible for generating AI-powered recommendations */
-    private final ActivityAIService aiService;
+    /** Generates AI-powered recommendations, batching activities when enabled */
+    private final RecommendationBatcher recommendationBatcher;
     
+    /** Streams recommendations section by section when streaming is enabled */
+    private final ActivityAIService aiService;
+
     /** Repository for persisting and retrieving recommendations */
     private final RecommendationRepository recommendationRepository;
 
-    /**
-     * The name of the RabbitMQ queue to listen to for activity messages.
-     * Injected from application.yml configuration.
-     */
-    @Value("${rabbitmq.queue.name}")
-    private String queueName;
+    /** Schedules broker-side retries for messages that failed */
+    private final ActivityRetryService retryService;
+
+    /** Records processing times and lag that drive consumer scaling */
+    private final ListenerAutoscaler listenerAutoscaler;
+
+    /** Saves partial recommendations while the AI answer streams in, instead of batching */
+    @Value("${gemini.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    /** Saves the local engine's recommendation before asking the AI, which then replaces it */
+    @Value("${ai.local-engine.instant-answer:false}")
+    private boolean instantAnswer;
 
     /**
-     * Listens to the configured RabbitMQ queue for activity messages and processes them
+     * Listens to the live queue for activities that just happened and processes them
      * to generate fitness recommendations.
      * 
-     * <p>This method is annotated with {@code @Retryable} to automatically retry failed
-     * message processing up to 3 times with exponential backoff. If all retries fail,
-     * the message will be sent to the dead-letter queue (if configured).</p>
+     * <p>Events are delivered at least once, so processing is idempotent: a recommendation that
+     * already exists for the activity is replaced rather than saved a second time.</p>
+     *
+     * <p>Failures are never retried on the consumer thread. The message is republished to the
+     * next retry tier, or to the parking lot after the last one, and then acknowledged. If the
+     * AI budget was used up, the local engine's recommendation is saved in the meantime and the
+     * retry replaces it.</p>
+     *
+     * @param activity The deserialized Activity object from the message
+     * @param message The raw message, republished as is when processing fails
+     */
+    @Transactional
+    @RabbitListener(id = LISTENER_ID, queues = "#{'${rabbitmq.queue.name}'}")
+    public void processActivity(Activity activity, Message message) {
+        process(activity, message, ActivityLane.LIVE);
+    }
+
+    /**
+     * Listens to the backfill queue for historical activities, processed the same way as live
+     * ones but with the consumers the live lane does not need.
      *
      * @param activity The deserialized Activity object from the message
-     * @throws AmqpRejectAndDontRequeueException if the message processing fails after all retries
+     * @param message The raw message, republished as is when processing fails
      */
     @Transactional
-    @Retryable(
-        value = {Exception.class},
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000, multiplier = 2.0)
-    )
-    @RabbitListener(queues = "#{'${rabbitmq.queue.name}'}")
-    public void processActivity(Activity activity) {
+    @RabbitListener(id = BACKFILL_LISTENER_ID, queues = "#{'${rabbitmq.queue.backfill-name:activity.backfill.queue}'}")
+    public void processBackfillActivity(Activity activity, Message message) {
+        process(activity, message, ActivityLane.BACKFILL);
+    }
+
+    private void process(Activity activity, Message message, ActivityLane lane) {
+        long started = System.nanoTime();
+        // Document of an earlier answer for this activity, replaced in place by the AI's
+        String documentId = null;
         try {
-            log.info("Received activity message for processing: {}", activity.getId());
+            log.info("Received {} activity message for processing: {}", lane, activity.getId());
+
+            // Retries and duplicate deliveries of the same event update the existing answer in place
+            documentId = recommendationRepository.findFirstByActivityId(activity.getId())
+                    .map(Recommendation::getId)
+                    .orElse(null);
+            if (instantAnswer && documentId == null) {
+                documentId = saveLocalAnswer(activity, null);
+            }
             
             // Generate AI-powered recommendation
             log.info("Generating recommendation for activity: {}", activity.getId());
-            Recommendation recommendation = aiService.generateRecommendation(activity);
+            if (streamingEnabled) {
+                Recommendation recommendation = streamAndPersist(activity, documentId);
+                log.info("Successfully saved streamed recommendation with id: {}", recommendation.getId());
+                return;
+            }
+            Recommendation recommendation = recommendationBatcher.recommend(activity);
             log.debug("Generated recommendation: {}", recommendation);
             
             // Persist the recommendation
             log.info("Persisting recommendation to database...");
+            recommendation.setId(documentId);
             Recommendation savedRecommendation = recommendationRepository.save(recommendation);
             log.info("Successfully saved recommendation with id: {}", savedRecommendation.getId());
             
         } catch (Exception e) {
             log.error("Error processing activity: {}", activity.getId(), e);
-            
-            // Re-throw as AmqpRejectAndDontRequeueException to prevent infinite retries
-            // and allow dead-letter queue processing if configured
-            throw new AmqpRejectAndDontRequeueException(
-                "Failed to process activity: " + activity.getId(), e);
+
+            if (documentId == null && isBudgetExhausted(e)) {
+                try {
+                    saveLocalAnswer(activity, null);
+                } catch (RuntimeException saveFailure) {
+                    log.warn("Could not save local recommendation for activity {}: {}", activity.getId(), saveFailure.getMessage());
+                }
+            }
+            // If the copy cannot be stored the exception propagates and the delivery is requeued
+            retryService.retryOrPark(message, e);
+        } finally {
+            Duration lag = activity.getCreatedAt() == null ? null
+                    : Duration.between(activity.getCreatedAt(), LocalDateTime.now());
+            listenerAutoscaler.recordProcessed(lane, Duration.ofNanos(System.nanoTime() - started), lag);
+        }
+    }
+
+    /**
+     * Saves the recommendation each time a streamed section arrives, so readers see the analysis
+     * before the rest of the answer is generated. Every save updates the same document, which is
+     * {@code documentId} when an earlier answer exists.
+     */
+    private Recommendation streamAndPersist(Activity activity, String documentId) {
+        AtomicReference<Recommendation> saved = new AtomicReference<>();
+        try {
+            return aiService.streamRecommendation(activity, update -> {
+                if (update.getId() == null) {
+                    update.setId(documentId);
+                }
+                saved.set(recommendationRepository.save(update));
+            });
+        } catch (RuntimeException e) {
+            if (documentId != null) {
+                // Put the earlier answer back instead of leaving a half-streamed one
+                saveLocalAnswer(activity, documentId);
+            } else if (saved.get() != null && saved.get().getId() != null) {
+                // The retry streams a new recommendation, so do not leave the partial one behind
+                recommendationRepository.deleteById(saved.get().getId());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the local engine's recommendation, marked partial until the AI's replaces it.
+     *
+     * @return the ID of the saved document
+     */
+    private String saveLocalAnswer(Activity activity, String documentId) {
+        Recommendation recommendation = aiService.localRecommendation(activity);
+        recommendation.setId(documentId);
+        recommendation.setPartial(true);
+        return recommendationRepository.save(recommendation).getId();
+    }
+
+    /**
+     * Returns true if the AI could not be asked because its concurrency limit or rate budget is
+     * used up, locally or as reported by Gemini.
+     */
+    private static boolean isBudgetExhausted(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof GeminiConcurrencyLimiter.SaturatedException
+                    || cause instanceof WebClientResponseException.TooManyRequests) {
+                return true;
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,173 @@
+package com.fitness.aiservice.service;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.fitness.aiservice.config.RabbitMqConfig.parkingLotQueueName;
+import static com.fitness.aiservice.config.RabbitMqConfig.retryQueueName;
+
+/**
+ * Moves failed activity messages through the broker-side retry tiers and the parking lot.
+ *
+ * <p>A failed message is republished to the delay queue of its next tier, or to the parking lot
+ * once every tier is used, and the original delivery is then acknowledged. Live and backfill
+ * messages have their own tiers and parking lots, so a message always returns to its lane. Each
+ * publish waits for the broker's confirm, so a message is never acknowledged before its copy is
+ * stored.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityRetryService {
+
+    /** Number of retries the message has already been through */
+    static final String RETRY_ATTEMPT_HEADER = "x-retry-attempt";
+    static final String LAST_ERROR_HEADER = "x-last-error";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rabbitmq.queue.name}")
+    private String queueName;
+    @Value("${rabbitmq.queue.backfill-name:activity.backfill.queue}")
+    private String backfillQueueName;
+    @Value("${rabbitmq.retry.delays-ms:5000,30000,120000}")
+    private List<Long> retryDelaysMs;
+    @Value("${rabbitmq.retry.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    /**
+     * Schedules another attempt for a failed message, or parks it when all tiers are used.
+     *
+     * @throws org.springframework.amqp.AmqpException if the broker did not store the copy; the
+     *         original delivery should then be requeued
+     */
+    public void retryOrPark(Message message, Exception cause) {
+        MessageProperties properties = message.getMessageProperties();
+        int attempt = retryAttempt(message) + 1;
+        properties.setHeader(RETRY_ATTEMPT_HEADER, attempt);
+        properties.setHeader(LAST_ERROR_HEADER, describe(cause));
+        String laneQueue = backfillQueueName.equals(properties.getConsumerQueue()) ? backfillQueueName : queueName;
+
+        if (attempt <= retryDelaysMs.size()) {
+            log.warn("Activity message failed, retry {} of {} in {} ms: {}",
+                    attempt, retryDelaysMs.size(), retryDelaysMs.get(attempt - 1), describe(cause));
+            send(retryQueueName(laneQueue, attempt), message);
+            meterRegistry.counter("ai.listener.retried", "tier", String.valueOf(attempt)).increment();
+        } else {
+            log.error("Activity message failed after {} retries, moving it to the parking lot: {}",
+                    retryDelaysMs.size(), describe(cause));
+            send(parkingLotQueueName(laneQueue), message);
+            meterRegistry.counter("ai.listener.parked").increment();
+        }
+    }
+
+    /**
+     * Moves up to {@code limit} parked messages back to their lane's queue with a fresh retry
+     * budget, live messages first. Each parked message is fetched without auto-ack and only
+     * acknowledged once the broker confirmed its copy, so a failed replay leaves it parked.
+     *
+     * @return number of messages replayed
+     */
+    public int replayParked(int limit) {
+        Integer replayed = rabbitTemplate.execute(channel -> {
+            channel.confirmSelect();
+            int count = 0;
+            for (String laneQueue : List.of(queueName, backfillQueueName)) {
+                while (count < limit) {
+                    GetResponse parked = channel.basicGet(parkingLotQueueName(laneQueue), false);
+                    if (parked == null) {
+                        break;
+                    }
+                    long deliveryTag = parked.getEnvelope().getDeliveryTag();
+                    Map<String, Object> headers = parked.getProps().getHeaders() != null
+                            ? new HashMap<>(parked.getProps().getHeaders())
+                            : new HashMap<>();
+                    headers.remove(RETRY_ATTEMPT_HEADER);
+                    try {
+                        channel.basicPublish("", laneQueue, parked.getProps().builder().headers(headers).build(),
+                                parked.getBody());
+                        channel.waitForConfirmsOrDie(confirmTimeoutMs);
+                    } catch (Exception e) {
+                        requeue(channel, deliveryTag);
+                        throw e;
+                    }
+                    channel.basicAck(deliveryTag, false);
+                    count++;
+                }
+            }
+            return count;
+        });
+        int count = replayed == null ? 0 : replayed;
+        meterRegistry.counter("ai.listener.replayed").increment(count);
+        log.info("Replayed {} parked activity messages", count);
+        return count;
+    }
+
+    // A channel that failed the confirm is closed, which returns the delivery to the queue by itself
+    private void requeue(Channel channel, long deliveryTag) {
+        try {
+            if (channel.isOpen()) {
+                channel.basicNack(deliveryTag, false, true);
+            }
+        } catch (Exception e) {
+            log.warn("Could not return parked message {} to the parking lot", deliveryTag, e);
+        }
+    }
+
+    /**
+     * @return number of messages waiting in the parking lots of both lanes
+     */
+    public long parkedCount() {
+        long parked = 0;
+        for (String laneQueue : List.of(queueName, backfillQueueName)) {
+            QueueInformation info = amqpAdmin.getQueueInfo(parkingLotQueueName(laneQueue));
+            parked += info == null ? 0 : info.getMessageCount();
+        }
+        return parked;
+    }
+
+    /**
+     * Returns true if processing the message failed before, so it is a retry or a replayed
+     * parked message.
+     */
+    static boolean hasFailedBefore(Message message) {
+        return message.getMessageProperties().getHeader(LAST_ERROR_HEADER) != null;
+    }
+
+    static int retryAttempt(Message message) {
+        Object attempt = message.getMessageProperties().getHeader(RETRY_ATTEMPT_HEADER);
+        return attempt instanceof Number number ? number.intValue() : 0;
+    }
+
+    private void send(String queue, Message message) {
+        rabbitTemplate.invoke(operations -> {
+            operations.send("", queue, message);
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+    }
+
+    private static String describe(Exception cause) {
+        Throwable root = cause;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getClass().getSimpleName() + ": " + root.getMessage();
+    }
+}
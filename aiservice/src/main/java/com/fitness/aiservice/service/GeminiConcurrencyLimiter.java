@@ -0,0 +1,248 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for Gemini requests.
+ *
+ * <p>A request needs a free slot under the adaptive concurrency limit and room in the
+ * requests-per-minute and tokens-per-minute budgets, otherwise the caller waits up to
+ * {@code gemini.limiter.acquire-timeout-ms}. The limit follows AIMD: each fast success
+ * (below {@code gemini.limiter.latency-threshold-ms}) raises it by 1/limit, so by about one per
+ * round of requests, and every 429, 503 or timeout multiplies it by
+ * {@code gemini.limiter.backoff-ratio}. Token use is estimated up front from the prompt and the
+ * average completion size, then corrected with the usage Gemini reports.</p>
+ *
+ * <p>The budgets are token buckets refilled continuously, holding at most one minute's worth.</p>
+ */
+@Slf4j
+@Service
+public class GeminiConcurrencyLimiter {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /** How a request admitted by {@link #acquire} ended */
+    public enum Outcome {
+        /** Answered; counts towards raising the limit if it was fast */
+        SUCCESS,
+        /** Rate limited or timed out; the limit backs off */
+        DROPPED,
+        /** Failed for another reason, or was cancelled; the limit is unchanged */
+        IGNORED
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdMs;
+    private final long acquireTimeoutMs;
+    private final double requestsPerMinute;
+    private final double tokensPerMinute;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double requestBudget;
+    private double tokenBudget;
+    private long refilledAt;
+    /** Average completion tokens of recent responses, used for the up-front estimate */
+    private double averageCompletionTokens = 500;
+
+    public GeminiConcurrencyLimiter(MeterRegistry meterRegistry,
+                                    @Value("${gemini.limiter.initial-limit:4}") int initialLimit,
+                                    @Value("${gemini.limiter.min-limit:1}") int minLimit,
+                                    @Value("${gemini.limiter.max-limit:32}") int maxLimit,
+                                    @Value("${gemini.limiter.backoff-ratio:0.5}") double backoffRatio,
+                                    @Value("${gemini.limiter.latency-threshold-ms:10000}") long latencyThresholdMs,
+                                    @Value("${gemini.limiter.acquire-timeout-ms:30000}") long acquireTimeoutMs,
+                                    @Value("${gemini.limiter.requests-per-minute:1000}") double requestsPerMinute,
+                                    @Value("${gemini.limiter.tokens-per-minute:1000000}") double tokensPerMinute) {
+        this.meterRegistry = meterRegistry;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        this.limit = initialLimit;
+        this.requestBudget = requestsPerMinute;
+        this.tokenBudget = tokensPerMinute;
+        this.refilledAt = System.nanoTime();
+        Gauge.builder("ai.gemini.limit", this, GeminiConcurrencyLimiter::limit).register(meterRegistry);
+        Gauge.builder("ai.gemini.in-flight", this, GeminiConcurrencyLimiter::inFlight).register(meterRegistry);
+        Gauge.builder("ai.gemini.waiting", this, GeminiConcurrencyLimiter::waiting).register(meterRegistry);
+    }
+
+    /**
+     * Waits for a slot under the concurrency limit and the rate budgets.
+     *
+     * @param prompt the prompt to be sent, used to estimate its tokens
+     * @return the estimated tokens charged to the budget, to be passed back to {@link #release}
+     * @throws SaturatedException if no slot frees up within the acquire timeout
+     */
+    public long acquire(String prompt) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        lock.lock();
+        try {
+            long estimatedTokens = prompt.length() / CHARS_PER_TOKEN + Math.round(averageCompletionTokens);
+            boolean throttled = false;
+            waiting++;
+            try {
+                while (true) {
+                    refill();
+                    String reason = inFlight >= (int) limit ? "concurrency"
+                            : requestBudget < 1 ? "requests-per-minute"
+                            : tokenBudget < Math.min(estimatedTokens, tokensPerMinute) ? "tokens-per-minute"
+                            : null;
+                    if (reason == null) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        meterRegistry.counter("ai.gemini.rejected", "reason", reason).increment();
+                        throw new SaturatedException("Gemini client saturated (" + reason + "), no slot within "
+                                + acquireTimeoutMs + " ms");
+                    }
+                    if (!throttled) {
+                        meterRegistry.counter("ai.gemini.throttled", "reason", reason).increment();
+                        throttled = true;
+                    }
+                    // Budgets refill over time, so wake up periodically even without a release
+                    changed.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            requestBudget -= 1;
+            tokenBudget -= estimatedTokens;
+            return estimatedTokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a slot only if one is free right now, for optional extra requests such as hedges.
+     *
+     * @return the estimated tokens charged to the budget, or -1 if no slot is free
+     */
+    public long tryAcquire(String prompt) {
+        lock.lock();
+        try {
+            refill();
+            long estimatedTokens = prompt.length() / CHARS_PER_TOKEN + Math.round(averageCompletionTokens);
+            if (waiting > 0 || inFlight >= (int) limit || requestBudget < 1
+                    || tokenBudget < Math.min(estimatedTokens, tokensPerMinute)) {
+                return -1;
+            }
+            inFlight++;
+            requestBudget -= 1;
+            tokenBudget -= estimatedTokens;
+            return estimatedTokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot of a finished request and adapts the limit to its outcome.
+     *
+     * @param estimatedTokens the value returned by {@link #acquire}
+     * @param promptTokens prompt tokens reported by Gemini, or 0 if unknown
+     * @param totalTokens total tokens reported by Gemini, or 0 if unknown
+     */
+    public void release(Outcome outcome, long latencyMs, long estimatedTokens, long promptTokens, long totalTokens) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (totalTokens > 0) {
+                tokenBudget += estimatedTokens - totalTokens;
+                averageCompletionTokens = averageCompletionTokens * 0.9 + (totalTokens - promptTokens) * 0.1;
+            }
+            double previous = limit;
+            if (outcome == Outcome.DROPPED) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (outcome == Outcome.SUCCESS && latencyMs <= latencyThresholdMs && inFlight + 1 >= (int) limit) {
+                // Only grow when the limit was actually the constraint
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            if ((int) previous != (int) limit) {
+                log.info("Gemini concurrency limit changed from {} to {} after {}", (int) previous, (int) limit, outcome);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether callers are queuing for a slot, i.e. more work is arriving than Gemini is allowed to take.
+     */
+    public boolean isSaturated() {
+        lock.lock();
+        try {
+            return waiting > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int waiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double minutes = (now - refilledAt) / (double) TimeUnit.MINUTES.toNanos(1);
+        refilledAt = now;
+        requestBudget = Math.min(requestsPerMinute, requestBudget + minutes * requestsPerMinute);
+        tokenBudget = Math.min(tokensPerMinute, tokenBudget + minutes * tokensPerMinute);
+    }
+
+    /**
+     * Thrown when a request gets no slot within the acquire timeout, because the concurrency
+     * limit or a rate budget is used up.
+     */
+    public static class SaturatedException extends IllegalStateException {
+
+        public SaturatedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,51 +1,346 @@
 package com.fitness.aiservice.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Client for the Gemini generateContent API.
+ *
+ * <p>Every request passes through {@link GeminiConcurrencyLimiter}, and connect and read timeouts
+ * come from {@code gemini.api.connect-timeout-ms} and {@code gemini.api.read-timeout-ms}. Rate
+ * limiting (429), overload (503) and timeouts make the limiter back off.</p>
+ *
+ * <p>With {@code gemini.hedging.enabled}, a request still running after the observed p95 latency
+ * (at least {@code gemini.hedging.min-delay-ms}) gets an identical second request. The first
+ * answer wins and the other request is cancelled. Only the original request can fail the call.
+ * Hedges are skipped when the limiter has no free slot, and they are capped by a budget that each
+ * request refills by {@code gemini.hedging.max-rate}, so at most that share of requests is hedged
+ * over time.</p>
+ *
+ * <p>{@link #streamAnswer} uses the streamGenerateContent endpoint instead, derived from
+ * {@code gemini.api.url} unless {@code gemini.api.stream-url} is set.</p>
+ *
+ * <p>This is the {@value #PROVIDER_NAME} provider of {@link LlmRouter}.</p>
+ */
+@Slf4j
 @Service
+public class GeminiService implements LlmProvider {
 
-public class GeminiService {
+    /** Name of this provider in {@code ai.router.providers} */
+    public static final String PROVIDER_NAME = "gemini";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SERVER_SENT_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
 
     private final WebClient webClient;
+    private final GeminiConcurrencyLimiter limiter;
+    private final MeterRegistry meterRegistry;
+    private final Timer latency;
+    private final Counter hedgesFired;
+    private final Counter hedgesWon;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Value("${gemini.api.url}")
     private String geminiApiUrl;
+    @Value("${gemini.api.stream-url:}")
+    private String geminiStreamUrl;
     @Value("${gemini.api.key}")
     private String geminiApiKey;
+    @Value("${gemini.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+    @Value("${gemini.hedging.max-rate:0.05}")
+    private double hedgeMaxRate;
+    @Value("${gemini.hedging.max-burst:5}")
+    private double hedgeMaxBurst;
+    @Value("${gemini.hedging.min-delay-ms:500}")
+    private long hedgeMinDelayMs;
+    @Value("${gemini.hedging.min-samples:20}")
+    private long hedgeMinSamples;
+
+    /** Hedges that may still be fired; every request adds max-rate, every hedge takes one */
+    private double hedgeBudget;
 
-    public GeminiService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.build();
+    public GeminiService(WebClient.Builder webClientBuilder,
+                         GeminiConcurrencyLimiter limiter,
+                         MeterRegistry meterRegistry,
+                         @Value("${gemini.api.connect-timeout-ms:5000}") int connectTimeoutMs,
+                         @Value("${gemini.api.read-timeout-ms:60000}") long readTimeoutMs) {
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs));
+        this.webClient = webClientBuilder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+        this.limiter = limiter;
+        this.meterRegistry = meterRegistry;
+        this.latency = Timer.builder("ai.gemini.latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.hedgesFired = meterRegistry.counter("ai.gemini.hedge.fired");
+        this.hedgesWon = meterRegistry.counter("ai.gemini.hedge.won");
     }
 
+    @Override
+    public String name() {
+        return PROVIDER_NAME;
+    }
+
+    /**
+     * Returns the text of the first candidate in the answer to a prompt.
+     */
     public String getAnswer(String question) {
+        return getAnswer(question, String::new).value();
+    }
+
+    /**
+     * Sends a prompt and reads the text of the first candidate straight from the response buffers.
+     *
+     * <p>The response is read with a streaming parser as soon as it has arrived, without decoding
+     * it into a string or building a tree. The reader gets the candidate text, or no characters if
+     * the response has none.</p>
+     *
+     * @param question The prompt to send
+     * @param reader Turns the candidate text into the result
+     * @return the result of the reader and the token usage reported for the request
+     */
+    @Override
+    public <T> Answer<T> getAnswer(String question, AnswerReader<T> reader) {
         String uri = UriComponentsBuilder.fromUriString(geminiApiUrl)
                 .queryParam("key", geminiApiKey)
                 .build()
                 .toUriString();
+        Map<String, Object> requestBody = LlmApi.GEMINI.requestBody(question, null);
+        long estimatedTokens = acquire(question);
+
+        Mono<Answer<T>> primary = send(uri, requestBody, estimatedTokens, reader);
+        Duration hedgeDelay = hedgeDelay();
+        if (hedgeDelay == null) {
+            return primary.block();
+        }
 
-        Map<String, Object> requestBody = Map.of(
-                "contents", new Object[]{
-                        Map.of("parts", new Object[]{
-                                Map.of("text", question)
-                        })
-                }
-        );
+        // A failed or skipped hedge never signals, so only the original request can fail the call
+        Mono<Attempt<T>> hedge = Mono.delay(hedgeDelay)
+                .flatMap(tick -> hedge(uri, requestBody, question, reader))
+                .map(answer -> new Attempt<>(answer, true))
+                .onErrorResume(e -> Mono.never());
+        Attempt<T> attempt = Mono.firstWithSignal(primary.map(answer -> new Attempt<>(answer, false)), hedge).block();
+        if (attempt == null) {
+            return null;
+        }
+        if (attempt.hedged()) {
+            hedgesWon.increment();
+        }
+        return attempt.answer();
+    }
 
-        String response = webClient.post()
+    /**
+     * Streams the answer from the streamGenerateContent endpoint as server-sent events.
+     *
+     * <p>Each element is one response chunk with the next piece of candidate text; the last one
+     * carries the usage metadata. Chunks are read on the consuming thread as they arrive. The
+     * stream holds a limiter slot and must be closed, which cancels the request if it is still
+     * running. Streamed requests are never hedged.</p>
+     *
+     * @param question The prompt to send
+     * @return the response chunks, in order
+     */
+    public Stream<JsonNode> streamAnswer(String question) {
+        String uri = UriComponentsBuilder.fromUriString(streamUrl())
+                .queryParam("alt", "sse")
+                .queryParam("key", geminiApiKey)
+                .build()
+                .toUriString();
+        long estimatedTokens = acquire(question);
+
+        long started = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        AtomicReference<JsonNode> usage = new AtomicReference<>(objectMapper.missingNode());
+        // Completion, error and cancel may race when the consumer closes the stream, so release once
+        Consumer<GeminiConcurrencyLimiter.Outcome> release = outcome -> {
+            if (released.compareAndSet(false, true)) {
+                finish(outcome, started, estimatedTokens,
+                        usage.get().path("promptTokenCount").asLong(0), usage.get().path("totalTokenCount").asLong(0));
+            }
+        };
+        Flux<JsonNode> chunks = webClient.post()
                 .uri(uri)
                 .header("Content-Type", "application/json")
-                .bodyValue(requestBody)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(LlmApi.GEMINI.requestBody(question, null))
                 .retrieve()
-                .bodyToMono(String.class)
-                .block();
+                .bodyToFlux(SERVER_SENT_EVENT)
+                .mapNotNull(ServerSentEvent::data)
+                .map(this::readChunk)
+                .doOnNext(chunk -> {
+                    if (chunk.has("usageMetadata")) {
+                        usage.set(chunk.path("usageMetadata"));
+                    }
+                })
+                .doOnComplete(() -> release.accept(GeminiConcurrencyLimiter.Outcome.SUCCESS))
+                .doOnError(e -> release.accept(outcomeOf(e)))
+                .doOnCancel(() -> release.accept(GeminiConcurrencyLimiter.Outcome.IGNORED));
+        return chunks.toStream(1);
+    }
 
-        return response;
+    private String streamUrl() {
+        return StringUtils.hasText(geminiStreamUrl)
+                ? geminiStreamUrl
+                : geminiApiUrl.replace(":generateContent", ":streamGenerateContent");
+    }
+
+    private JsonNode readChunk(String data) {
+        try {
+            return objectMapper.readTree(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable Gemini stream chunk", e);
+        }
+    }
 
+    private long acquire(String question) {
+        try {
+            return limiter.acquire(question);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a Gemini slot", e);
+        }
+    }
+
+    /**
+     * Sends one request that holds a limiter slot until it completes, fails or is cancelled.
+     */
+    private <T> Mono<Answer<T>> send(String uri, Map<String, Object> requestBody, long estimatedTokens,
+                                     AnswerReader<T> reader) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return webClient.post()
+                    .uri(uri)
+                    .header("Content-Type", "application/json")
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .bodyToMono(DataBuffer.class)
+                    .map(buffer -> readAnswer(buffer, reader))
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty response received from Gemini")))
+                    .doOnSuccess(answer -> finish(GeminiConcurrencyLimiter.Outcome.SUCCESS, started, estimatedTokens,
+                            answer.promptTokens(), answer.totalTokens()))
+                    .doOnError(e -> finish(outcomeOf(e), started, estimatedTokens, 0, 0))
+                    .doOnCancel(() -> finish(GeminiConcurrencyLimiter.Outcome.IGNORED, started, estimatedTokens, 0, 0));
+        });
+    }
+
+    private <T> Answer<T> readAnswer(DataBuffer buffer, AnswerReader<T> reader) {
+        try (InputStream body = buffer.asInputStream(true)) {
+            return LlmApi.GEMINI.readAnswer(objectMapper.getFactory(), body, reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable Gemini response", e);
+        }
+    }
+
+    private <T> Mono<Answer<T>> hedge(String uri, Map<String, Object> requestBody, String question,
+                                      AnswerReader<T> reader) {
+        if (!takeHedgeBudget()) {
+            meterRegistry.counter("ai.gemini.hedge.skipped", "reason", "budget").increment();
+            return Mono.never();
+        }
+        long estimatedTokens = limiter.tryAcquire(question);
+        if (estimatedTokens < 0) {
+            refundHedgeBudget();
+            meterRegistry.counter("ai.gemini.hedge.skipped", "reason", "limiter").increment();
+            return Mono.never();
+        }
+        hedgesFired.increment();
+        log.debug("Gemini request slower than hedge delay, sending a hedge");
+        return send(uri, requestBody, estimatedTokens, reader);
+    }
+
+    /**
+     * Returns how long to wait before hedging, or null if this request is not hedged.
+     */
+    private Duration hedgeDelay() {
+        if (!hedgingEnabled) {
+            return null;
+        }
+        synchronized (this) {
+            hedgeBudget = Math.min(hedgeMaxBurst, hedgeBudget + hedgeMaxRate);
+        }
+        // Until enough latencies are observed, p95 is not meaningful
+        if (latency.count() < hedgeMinSamples) {
+            return null;
+        }
+        double p95 = 0;
+        for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.95) {
+                p95 = percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Duration.ofMillis(Math.max(hedgeMinDelayMs, Math.round(p95)));
+    }
+
+    private synchronized boolean takeHedgeBudget() {
+        if (hedgeBudget < 1) {
+            return false;
+        }
+        hedgeBudget -= 1;
+        return true;
+    }
+
+    private synchronized void refundHedgeBudget() {
+        hedgeBudget += 1;
+    }
+
+    private void finish(GeminiConcurrencyLimiter.Outcome outcome, long started, long estimatedTokens,
+                        long promptTokens, long totalTokens) {
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        if (outcome != GeminiConcurrencyLimiter.Outcome.IGNORED) {
+            latency.record(latencyMs, TimeUnit.MILLISECONDS);
+        }
+        limiter.release(outcome, latencyMs, estimatedTokens, promptTokens, totalTokens);
+    }
+
+    private static GeminiConcurrencyLimiter.Outcome outcomeOf(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                    || response.getStatusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE)
+                    ? GeminiConcurrencyLimiter.Outcome.DROPPED
+                    : GeminiConcurrencyLimiter.Outcome.IGNORED;
+        }
+        // Connect and read timeouts surface as request exceptions, as do refused connections
+        return error instanceof WebClientRequestException
+                ? GeminiConcurrencyLimiter.Outcome.DROPPED
+                : GeminiConcurrencyLimiter.Outcome.IGNORED;
+    }
 
+    private record Attempt<T>(Answer<T> answer, boolean hedged) {
     }
 }
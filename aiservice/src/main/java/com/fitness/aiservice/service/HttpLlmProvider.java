@@ -0,0 +1,76 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Client for an additional LLM endpoint speaking the Gemini or the OpenAI chat completions API,
+ * such as another hosted model or a local model server.
+ *
+ * <p>Unlike {@link GeminiService} it has no admission control or hedging of its own; the
+ * {@link LlmRouter} moves requests away from it when it turns slow or fails.</p>
+ */
+class HttpLlmProvider implements LlmProvider {
+
+    private final String name;
+    private final LlmApi api;
+    private final String uri;
+    private final String model;
+    private final String apiKey;
+    private final WebClient webClient;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    HttpLlmProvider(String name, LlmApi api, String url, String model, String apiKey, WebClient webClient) {
+        this.name = name;
+        this.api = api;
+        // Gemini takes the key as a query parameter, OpenAI-compatible servers as a bearer token
+        this.uri = api == LlmApi.GEMINI && StringUtils.hasText(apiKey)
+                ? UriComponentsBuilder.fromUriString(url).queryParam("key", apiKey).build().toUriString()
+                : url;
+        this.model = model;
+        this.apiKey = apiKey;
+        this.webClient = webClient;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public <T> Answer<T> getAnswer(String prompt, AnswerReader<T> reader) {
+        Map<String, Object> requestBody = api.requestBody(prompt, model);
+        return webClient.post()
+                .uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    if (api == LlmApi.OPENAI && StringUtils.hasText(apiKey)) {
+                        headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey);
+                    }
+                })
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(DataBuffer.class)
+                .map(buffer -> readAnswer(buffer, reader))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty response received from " + name)))
+                .block();
+    }
+
+    private <T> Answer<T> readAnswer(DataBuffer buffer, AnswerReader<T> reader) {
+        try (InputStream body = buffer.asInputStream(true)) {
+            return api.readAnswer(jsonFactory, body, reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable response from " + name, e);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.ActivityLane;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scales the activity listeners' consumers to the backlog and shares them between the lanes.
+ *
+ * <p>Every {@code ai.listener.adjust-interval-ms} the depth of the live and backfill queues is
+ * sampled and combined with the average processing time to estimate how many consumers drain the
+ * backlog within {@code ai.listener.target-drain-seconds}. Scaling up happens at once, scaling down one consumer per
+ * interval, always within {@code ai.listener.min-consumers} and {@code ai.listener.max-consumers}.
+ * Prefetch is sized so each consumer holds about {@code ai.listener.prefetch-window-ms} of work; it
+ * applies to consumers started after the change.</p>
+ *
+ * <p>While callers queue in {@link GeminiConcurrencyLimiter}, consumption is throttled: consumers are
+ * never added and are cut back to the Gemini concurrency limit at once, so messages stay in the
+ * queue instead of being prefetched by consumers that cannot make progress.</p>
+ *
+ * <p>The consumers are shared by weighted fair sharing: while both lanes have a backlog, live gets
+ * {@code ai.lanes.live-weight} and backfill {@code ai.lanes.backfill-weight} parts. A lane without
+ * backlog keeps one consumer and leaves the rest to the other lane, except that live always keeps
+ * {@code ai.lanes.live-reserve} consumers, so a new live message never waits for a backfill one to
+ * finish. The lanes together never get more than the desired total; when it leaves nothing for
+ * backfill, its container is stopped until there is.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ListenerAutoscaler {
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+    private final RecommendationBatcher recommendationBatcher;
+    private final GeminiConcurrencyLimiter geminiLimiter;
+
+    @Value("${rabbitmq.queue.name}")
+    private String queueName;
+    @Value("${rabbitmq.queue.backfill-name:activity.backfill.queue}")
+    private String backfillQueueName;
+    @Value("${ai.listener.min-consumers:1}")
+    private int minConsumers;
+    @Value("${ai.listener.max-consumers:8}")
+    private int maxConsumers;
+    @Value("${ai.listener.target-drain-seconds:10}")
+    private double targetDrainSeconds;
+    @Value("${ai.listener.min-prefetch:1}")
+    private int minPrefetch;
+    @Value("${ai.listener.max-prefetch:20}")
+    private int maxPrefetch;
+    @Value("${ai.listener.prefetch-window-ms:2000}")
+    private long prefetchWindowMs;
+    @Value("${ai.lanes.live-weight:4}")
+    private int liveWeight;
+    @Value("${ai.lanes.backfill-weight:1}")
+    private int backfillWeight;
+    @Value("${ai.lanes.live-reserve:1}")
+    private int liveReserve;
+
+    private Timer processing;
+    private final Map<ActivityLane, Timer> lag = new EnumMap<>(ActivityLane.class);
+    private final Map<ActivityLane, Long> queueDepth = new ConcurrentHashMap<>();
+    /** Exponentially weighted average processing time, 0 until the first message */
+    private volatile double averageProcessingMs;
+    /** True while the backfill container is stopped because all consumers went to live */
+    private volatile boolean backfillPaused;
+
+    @PostConstruct
+    void registerMetrics() {
+        processing = Timer.builder("ai.listener.processing")
+                .description("Time to turn one activity message into a recommendation")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        for (ActivityLane lane : ActivityLane.values()) {
+            String tag = lane.name().toLowerCase();
+            queueDepth.put(lane, 0L);
+            lag.put(lane, Timer.builder("ai.listener.lag")
+                    .description("Time from activity creation until its message is processed")
+                    .tag("lane", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("ai.listener.queue.depth", () -> queueDepth.get(lane))
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            Gauge.builder("ai.listener.consumers", () -> container(lane) == null ? 0 : container(lane).getActiveConsumerCount())
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Records one processed message.
+     *
+     * @param lane lane the message arrived in
+     * @param elapsed time spent processing the message
+     * @param messageLag time since the activity was created, or null when unknown
+     */
+    public void recordProcessed(ActivityLane lane, Duration elapsed, Duration messageLag) {
+        processing.record(elapsed);
+        if (messageLag != null && !messageLag.isNegative()) {
+            lag.get(lane).record(messageLag);
+        }
+        double elapsedMs = elapsed.toNanos() / 1_000_000.0;
+        double previous = averageProcessingMs;
+        averageProcessingMs = previous == 0 ? elapsedMs : previous * 0.8 + elapsedMs * 0.2;
+    }
+
+    @Scheduled(fixedDelayString = "${ai.listener.adjust-interval-ms:2000}",
+            initialDelayString = "${ai.listener.adjust-interval-ms:2000}")
+    public void adjust() {
+        SimpleMessageListenerContainer live = container(ActivityLane.LIVE);
+        SimpleMessageListenerContainer backfill = container(ActivityLane.BACKFILL);
+        if (live == null || !live.isRunning() || backfill == null || (!backfill.isRunning() && !backfillPaused)) {
+            return;
+        }
+        if (!sampleDepth(ActivityLane.LIVE, queueName) || !sampleDepth(ActivityLane.BACKFILL, backfillQueueName)) {
+            return;
+        }
+
+        long liveDepth = queueDepth.get(ActivityLane.LIVE);
+        long backfillDepth = queueDepth.get(ActivityLane.BACKFILL);
+        int current = live.getActiveConsumerCount() + backfill.getActiveConsumerCount();
+        int desired = desiredConsumers(current, liveDepth + backfillDepth, averageProcessingMs);
+        int liveConsumers = liveShare(desired, liveDepth, backfillDepth);
+        int prefetch = desiredPrefetch(averageProcessingMs);
+        scale(ActivityLane.LIVE, live, liveConsumers, prefetch);
+        scaleBackfill(backfill, desired - liveConsumers, prefetch);
+    }
+
+    /**
+     * Returns how many of {@code total} consumers go to the live lane, between 1 and {@code total};
+     * the rest go to the backfill lane. Backfill gets at least one unless the live reserve takes all.
+     */
+    int liveShare(int total, long liveDepth, long backfillDepth) {
+        int reserve = Math.min(total, Math.max(1, liveReserve));
+        int share;
+        if (backfillDepth == 0) {
+            share = total - 1;
+        } else if (liveDepth == 0) {
+            // Work-conserving: idle live capacity beyond the reserve drains the backfill
+            share = reserve;
+        } else {
+            share = (int) Math.round((double) total * liveWeight / (liveWeight + backfillWeight));
+        }
+        return Math.max(reserve, Math.min(total - 1, share));
+    }
+
+    int desiredConsumers(int current, long depth, double processingMs) {
+        int needed;
+        if (depth == 0) {
+            needed = minConsumers;
+        } else if (processingMs == 0) {
+            // Nothing measured yet; one more consumer is the safe step
+            needed = current + 1;
+        } else {
+            double drainSeconds = depth * processingMs / 1000.0;
+            needed = (int) Math.ceil(drainSeconds / targetDrainSeconds);
+        }
+        if (needed < current) {
+            // Scale down gradually so a short lull does not drop consumers needed a moment later
+            needed = current - 1;
+        }
+        // Batching needs enough blocked consumers to fill a batch
+        int floor = Math.min(maxConsumers, Math.max(minConsumers, recommendationBatcher.requiredConsumers()));
+        int desired = Math.max(floor, Math.min(maxConsumers, needed));
+        if (geminiLimiter.isSaturated()) {
+            // Gemini cannot take more work: extra consumers would only hold prefetched messages while waiting
+            desired = Math.max(minConsumers, Math.min(desired, Math.min(current, geminiLimiter.limit())));
+        }
+        // The live container cannot run without a consumer
+        return Math.max(1, desired);
+    }
+
+    int desiredPrefetch(double processingMs) {
+        if (processingMs == 0) {
+            return minPrefetch;
+        }
+        long prefetch = Math.round(prefetchWindowMs / processingMs);
+        return (int) Math.max(minPrefetch, Math.min(maxPrefetch, prefetch));
+    }
+
+    private boolean sampleDepth(ActivityLane lane, String queue) {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queue);
+            if (info == null) {
+                return false;
+            }
+            queueDepth.put(lane, (long) info.getMessageCount());
+            return true;
+        } catch (Exception e) {
+            log.debug("Could not sample depth of queue {}: {}", queue, e.getMessage());
+            return false;
+        }
+    }
+
+    private void scale(ActivityLane lane, SimpleMessageListenerContainer container, int desired, int prefetch) {
+        int current = container.getActiveConsumerCount();
+        if (desired != current) {
+            log.info("Scaling {} activity listener from {} to {} consumers (queue depth {}, avg processing {} ms)",
+                    lane, current, desired, queueDepth.get(lane), Math.round(averageProcessingMs));
+            // Consumers started by this change pick up the new prefetch
+            container.setPrefetchCount(prefetch);
+            container.setConcurrentConsumers(desired);
+        }
+    }
+
+    /**
+     * A container cannot run without consumers, so a backfill share of zero stops it instead.
+     */
+    private void scaleBackfill(SimpleMessageListenerContainer container, int desired, int prefetch) {
+        if (desired == 0) {
+            if (container.isRunning()) {
+                log.info("Pausing backfill activity listener, all {} consumers go to live", container.getActiveConsumerCount());
+                backfillPaused = true;
+                container.stop();
+            }
+            return;
+        }
+        if (backfillPaused) {
+            if (!listenerRegistry.isRunning()) {
+                return;
+            }
+            log.info("Resuming backfill activity listener with {} consumers", desired);
+            container.setPrefetchCount(prefetch);
+            container.setConcurrentConsumers(desired);
+            container.start();
+            backfillPaused = false;
+            return;
+        }
+        scale(ActivityLane.BACKFILL, container, desired, prefetch);
+    }
+
+    private SimpleMessageListenerContainer container(ActivityLane lane) {
+        String id = lane == ActivityLane.LIVE ? ActivityMessageListener.LISTENER_ID : ActivityMessageListener.BACKFILL_LISTENER_ID;
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(id);
+        return container instanceof SimpleMessageListenerContainer simple ? simple : null;
+    }
+}
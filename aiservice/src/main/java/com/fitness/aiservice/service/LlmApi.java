@@ -0,0 +1,152 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request and response format of an LLM HTTP API.
+ */
+public enum LlmApi {
+
+    /** Gemini generateContent */
+    GEMINI(new String[]{"candidates", null, "content", "parts", null, "text"},
+            "usageMetadata", "promptTokenCount", "totalTokenCount"),
+
+    /** OpenAI chat completions, also served by local model servers such as Ollama, vLLM or llama.cpp */
+    OPENAI(new String[]{"choices", null, "message", "content"},
+            "usage", "prompt_tokens", "total_tokens");
+
+    /** Fields and first array elements (null) leading to the answer text */
+    private final String[] textPath;
+    private final String usageField;
+    private final String promptTokensField;
+    private final String totalTokensField;
+
+    LlmApi(String[] textPath, String usageField, String promptTokensField, String totalTokensField) {
+        this.textPath = textPath;
+        this.usageField = usageField;
+        this.promptTokensField = promptTokensField;
+        this.totalTokensField = totalTokensField;
+    }
+
+    /**
+     * Builds the request body for a single user prompt.
+     *
+     * @param model model to ask for; Gemini takes it from the URL, so it is only sent to OpenAI APIs
+     */
+    public Map<String, Object> requestBody(String prompt, String model) {
+        if (this == GEMINI) {
+            return Map.of(
+                    "contents", new Object[]{
+                            Map.of("parts", new Object[]{
+                                    Map.of("text", prompt)
+                            })
+                    }
+            );
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        if (StringUtils.hasText(model)) {
+            body.put("model", model);
+        }
+        body.put("messages", List.of(Map.of("role", "user", "content", prompt)));
+        return body;
+    }
+
+    /**
+     * Reads a response in one pass, handing the first answer text to the reader and collecting
+     * the token usage. Every other field is skipped without being parsed.
+     */
+    public <T> LlmProvider.Answer<T> readAnswer(JsonFactory jsonFactory, InputStream body,
+                                                LlmProvider.AnswerReader<T> reader) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("Empty response received from " + this + " API");
+            }
+            T value = null;
+            boolean found = false;
+            long promptTokens = 0;
+            long totalTokens = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (textPath[0].equals(field) && !found) {
+                    AnswerText<T> text = readText(parser, 1, reader);
+                    found = text != null;
+                    value = found ? text.value() : null;
+                } else if (usageField.equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        parser.nextToken();
+                        if (promptTokensField.equals(name)) {
+                            promptTokens = parser.getValueAsLong(0);
+                        } else if (totalTokensField.equals(name)) {
+                            totalTokens = parser.getValueAsLong(0);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!found) {
+                value = reader.read(new char[0], 0, 0);
+            }
+            return new LlmProvider.Answer<>(value, promptTokens, totalTokens);
+        }
+    }
+
+    /**
+     * Follows the text path from the value at the current token, where a null step means the
+     * first array element, and reads the string at its end. The whole current value is consumed.
+     *
+     * @return the result of the reader, or null if the path does not lead to a string
+     */
+    private <T> AnswerText<T> readText(JsonParser parser, int step, LlmProvider.AnswerReader<T> reader) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (step == textPath.length) {
+            if (token != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+                return null;
+            }
+            // The characters are only valid until the next token, so the reader runs right here
+            return new AnswerText<>(reader.read(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+        }
+        AnswerText<T> text = null;
+        if (token == JsonToken.START_ARRAY && textPath[step] == null) {
+            boolean first = true;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (first) {
+                    text = readText(parser, step + 1, reader);
+                    first = false;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (token == JsonToken.START_OBJECT && textPath[step] != null) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (text == null && textPath[step].equals(field)) {
+                    text = readText(parser, step + 1, reader);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+        return text;
+    }
+
+    private record AnswerText<T>(T value) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.fitness.aiservice.service;
+
+import java.io.IOException;
+
+/**
+ * An LLM endpoint that answers a single prompt, selected per request by {@link LlmRouter}.
+ *
+ * @see GeminiService
+ * @see HttpLlmProvider
+ */
+public interface LlmProvider {
+
+    /**
+     * Name of the provider in {@code ai.router.providers}, also used as the metrics tag.
+     */
+    String name();
+
+    /**
+     * Sends a prompt and reads the text of the answer straight from the response buffers.
+     *
+     * @param prompt The prompt to send
+     * @param reader Turns the answer text into the result
+     * @return the result of the reader and the token usage reported for the request
+     */
+    <T> Answer<T> getAnswer(String prompt, AnswerReader<T> reader);
+
+    /**
+     * Turns the answer text of a response into a result. The characters may only be read
+     * during the call.
+     */
+    @FunctionalInterface
+    interface AnswerReader<T> {
+        T read(char[] text, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Result read from a response, with the token usage the response reported.
+     */
+    record Answer<T>(T value, long promptTokens, long totalTokens) {
+    }
+}
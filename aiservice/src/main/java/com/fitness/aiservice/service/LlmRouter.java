@@ -0,0 +1,260 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes each prompt to one of several LLM providers.
+ *
+ * <p>{@code ai.router.providers} lists the providers in failover order. {@code gemini} is the
+ * built-in {@link GeminiService}; every other name is an {@link HttpLlmProvider} configured under
+ * {@code ai.router.provider.<name>} with {@code api} ({@code gemini} or {@code openai}),
+ * {@code url}, {@code model} and {@code api-key}. Each provider may set
+ * {@code cost-per-million-tokens}.</p>
+ *
+ * <p>Per provider the router tracks the average latency of successful requests and the error
+ * rate, both as moving averages, and the cost of the tokens used. {@code ai.router.policy}
+ * orders the providers for a request:
+ * <ul>
+ *   <li>{@code FASTEST}: lowest average latency first</li>
+ *   <li>{@code CHEAPEST_WITHIN_SLA}: cheapest of those averaging within {@code ai.router.sla-ms},
+ *       then the others by latency</li>
+ *   <li>{@code FAILOVER}: the configured order</li>
+ * </ul>
+ * Providers without samples count as fastest and within the SLA, so each is measured. A provider
+ * whose error rate exceeds {@code ai.router.max-error-rate} goes last until
+ * {@code ai.router.cooldown-ms} after its latest failure. Under {@code FASTEST} and
+ * {@code CHEAPEST_WITHIN_SLA} a share of {@code ai.router.explore-rate} requests goes to another
+ * provider first, so averages of unused providers stay current; {@code FAILOVER} never explores,
+ * so backups only see traffic when the providers ahead of them fail. A failed
+ * request moves on to the next provider, up to {@code ai.router.max-attempts} providers.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LlmRouter {
+
+    /** How providers are ordered for a request */
+    public enum Policy {
+        FASTEST,
+        CHEAPEST_WITHIN_SLA,
+        FAILOVER
+    }
+
+    /** Weight of the newest sample in the latency and error rate averages */
+    private static final double SMOOTHING = 0.2;
+
+    private final GeminiService geminiService;
+    private final WebClient.Builder webClientBuilder;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.router.providers:gemini}")
+    private List<String> providerNames;
+    @Value("${ai.router.policy:FAILOVER}")
+    private Policy policy;
+    @Value("${ai.router.sla-ms:10000}")
+    private long slaMs;
+    @Value("${ai.router.max-attempts:2}")
+    private int maxAttempts;
+    @Value("${ai.router.max-error-rate:0.5}")
+    private double maxErrorRate;
+    @Value("${ai.router.cooldown-ms:30000}")
+    private long cooldownMs;
+    @Value("${ai.router.explore-rate:0.05}")
+    private double exploreRate;
+    @Value("${ai.router.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+    @Value("${ai.router.read-timeout-ms:60000}")
+    private long readTimeoutMs;
+
+    private final List<Route> routes = new ArrayList<>();
+
+    @PostConstruct
+    void init() {
+        WebClient webClient = null;
+        for (String name : providerNames) {
+            name = name.trim();
+            LlmProvider provider;
+            if (GeminiService.PROVIDER_NAME.equals(name)) {
+                provider = geminiService;
+            } else {
+                if (webClient == null) {
+                    HttpClient httpClient = HttpClient.create()
+                            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                            .responseTimeout(Duration.ofMillis(readTimeoutMs));
+                    webClient = webClientBuilder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+                }
+                provider = createProvider(name, webClient);
+            }
+            double cost = environment.getProperty(property(name, "cost-per-million-tokens"), Double.class, 0.0);
+            routes.add(new Route(provider, cost, meterRegistry));
+        }
+        if (routes.isEmpty()) {
+            throw new IllegalStateException("ai.router.providers lists no LLM provider");
+        }
+        log.info("Routing LLM requests to {} with policy {}", providerNames, policy);
+    }
+
+    private HttpLlmProvider createProvider(String name, WebClient webClient) {
+        String url = environment.getProperty(property(name, "url"));
+        if (!StringUtils.hasText(url)) {
+            throw new IllegalStateException("No " + property(name, "url") + " configured for LLM provider " + name);
+        }
+        LlmApi api = LlmApi.valueOf(environment.getProperty(property(name, "api"), "openai").trim().toUpperCase());
+        return new HttpLlmProvider(name, api, url, environment.getProperty(property(name, "model")),
+                environment.getProperty(property(name, "api-key")), webClient);
+    }
+
+    private static String property(String provider, String key) {
+        return "ai.router.provider." + provider + "." + key;
+    }
+
+    /**
+     * Sends the prompt to the best provider under the policy, moving on to the next one if it fails.
+     *
+     * @return the answer of the first provider that succeeded
+     * @throws RuntimeException the failure of the last provider tried, if none succeeded
+     */
+    public <T> LlmProvider.Answer<T> getAnswer(String prompt, LlmProvider.AnswerReader<T> reader) {
+        List<Route> candidates = rank();
+        RuntimeException failure = null;
+        for (int attempt = 0; attempt < Math.min(Math.max(1, maxAttempts), candidates.size()); attempt++) {
+            Route route = candidates.get(attempt);
+            long started = System.nanoTime();
+            try {
+                LlmProvider.Answer<T> answer = route.provider.getAnswer(prompt, reader);
+                route.recordSuccess(System.nanoTime() - started, answer.totalTokens());
+                return answer;
+            } catch (GeminiConcurrencyLimiter.SaturatedException e) {
+                // The local admission budget is used up; the provider itself did not fail
+                route.skipped.increment();
+                failure = e;
+            } catch (RuntimeException e) {
+                route.recordFailure();
+                log.warn("LLM provider {} failed: {}", route.provider.name(), e.getMessage());
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Returns the providers in the order they are tried for the next request.
+     */
+    List<Route> rank() {
+        long now = System.nanoTime();
+        // Measurements change while sorting, so rank a snapshot of them
+        List<Ranking> rankings = new ArrayList<>(routes.size());
+        for (Route route : routes) {
+            rankings.add(route.ranking(slaMs, maxErrorRate, cooldownMs, now));
+        }
+        Comparator<Ranking> order = switch (policy) {
+            case FASTEST -> Comparator.comparingDouble(Ranking::latencyMs);
+            case CHEAPEST_WITHIN_SLA -> Comparator.comparing((Ranking ranking) -> !ranking.withinSla())
+                    .thenComparingDouble(ranking -> ranking.withinSla() ? ranking.cost() : ranking.latencyMs());
+            case FAILOVER -> (ranking1, ranking2) -> 0;
+        };
+        // Stable sort: ties keep the configured order
+        rankings.sort(Comparator.comparing(Ranking::unhealthy).thenComparing(order));
+        List<Route> ranked = new ArrayList<>(rankings.size());
+        rankings.forEach(ranking -> ranked.add(ranking.route()));
+        if (policy != Policy.FAILOVER && ranked.size() > 1 && exploreRate > 0
+                && ThreadLocalRandom.current().nextDouble() < exploreRate) {
+            ranked.add(0, ranked.remove(1 + ThreadLocalRandom.current().nextInt(ranked.size() - 1)));
+        }
+        return ranked;
+    }
+
+    private record Ranking(Route route, boolean unhealthy, boolean withinSla, double latencyMs, double cost) {
+    }
+
+    /**
+     * A provider with its measurements.
+     */
+    static final class Route {
+
+        private final LlmProvider provider;
+        private final double costPerMillionTokens;
+        private final Timer latency;
+        private final Counter succeeded;
+        private final Counter failed;
+        private final Counter skipped;
+        private final Counter cost;
+
+        private long samples;
+        /** Moving average latency of successful requests, 0 until the first one */
+        private double averageLatencyMs;
+        private double errorRate;
+        private long lastFailureNanos;
+
+        Route(LlmProvider provider, double costPerMillionTokens, MeterRegistry meterRegistry) {
+            this.provider = provider;
+            this.costPerMillionTokens = costPerMillionTokens;
+            String name = provider.name();
+            this.latency = Timer.builder("ai.router.latency")
+                    .tag("provider", name)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.succeeded = meterRegistry.counter("ai.router.requests", "provider", name, "outcome", "success");
+            this.failed = meterRegistry.counter("ai.router.requests", "provider", name, "outcome", "failure");
+            this.skipped = meterRegistry.counter("ai.router.requests", "provider", name, "outcome", "skipped");
+            this.cost = Counter.builder("ai.router.cost").tag("provider", name).baseUnit("usd").register(meterRegistry);
+            Gauge.builder("ai.router.error-rate", this, Route::errorRate).tag("provider", name).register(meterRegistry);
+        }
+
+        LlmProvider provider() {
+            return provider;
+        }
+
+        synchronized double errorRate() {
+            return errorRate;
+        }
+
+        private synchronized Ranking ranking(long slaMs, double maxErrorRate, long cooldownMs, long now) {
+            boolean unhealthy = errorRate > maxErrorRate
+                    && now - lastFailureNanos < TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+            return new Ranking(this, unhealthy, averageLatencyMs <= slaMs, averageLatencyMs, costPerMillionTokens);
+        }
+
+        void recordSuccess(long elapsedNanos, long totalTokens) {
+            latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            succeeded.increment();
+            cost.increment(totalTokens * costPerMillionTokens / 1_000_000);
+            double elapsedMs = elapsedNanos / 1_000_000.0;
+            synchronized (this) {
+                averageLatencyMs = samples == 0 ? elapsedMs : averageLatencyMs * (1 - SMOOTHING) + elapsedMs * SMOOTHING;
+                errorRate = errorRate * (1 - SMOOTHING);
+                samples++;
+            }
+        }
+
+        void recordFailure() {
+            failed.increment();
+            synchronized (this) {
+                errorRate = errorRate * (1 - SMOOTHING) + SMOOTHING;
+                lastFailureNanos = System.nanoTime();
+            }
+        }
+    }
+}
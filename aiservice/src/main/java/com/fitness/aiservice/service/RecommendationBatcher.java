@@ -0,0 +1,219 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Opt-in micro-batching of recommendation requests.
+ *
+ * <p>With {@code ai.batching.enabled} the listener threads hand their activities to this batcher
+ * and wait for the result. A collector thread groups them into batches of up to
+ * {@code ai.batching.max-items} activities or {@code ai.batching.max-wait-ms} after the first one,
+ * whichever comes first, and each batch is analyzed with one AI request on a pool of
+ * {@code ai.batching.max-concurrent-batches} threads. Activities missing from the batched answer
+ * fall back to a single request. When batching is disabled every activity gets its own request.
+ * Listener threads block while their batch is processed, so {@link ListenerAutoscaler} keeps at
+ * least {@link #requiredConsumers()} consumers running.</p>
+ *
+ * <p>Calls and prompt tokens saved are estimated against one request per activity, with
+ * four prompt characters per token.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecommendationBatcher {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ActivityAIService aiService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.batching.enabled:false}")
+    private boolean enabled;
+    @Value("${ai.batching.max-items:8}")
+    private int maxItems;
+    @Value("${ai.batching.max-wait-ms:200}")
+    private long maxWaitMs;
+    @Value("${ai.batching.max-concurrent-batches:4}")
+    private int maxConcurrentBatches;
+    @Value("${ai.batching.result-timeout-ms:120000}")
+    private long resultTimeoutMs;
+
+    private final BlockingQueue<PendingActivity> pending = new LinkedBlockingQueue<>();
+    private ExecutorService batchExecutor;
+    private Thread collector;
+    private volatile boolean running;
+
+    private Counter activities;
+    private Counter llmCalls;
+    private Counter fallbacks;
+    private Counter callsSaved;
+    private Counter promptTokensSaved;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        activities = meterRegistry.counter("ai.batching.activities");
+        llmCalls = meterRegistry.counter("ai.batching.llm-calls");
+        fallbacks = meterRegistry.counter("ai.batching.fallbacks");
+        callsSaved = meterRegistry.counter("ai.batching.calls-saved");
+        promptTokensSaved = meterRegistry.counter("ai.batching.prompt-tokens-saved");
+
+        batchExecutor = Executors.newFixedThreadPool(maxConcurrentBatches, runnable -> {
+            Thread thread = new Thread(runnable, "recommendation-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        collector = new Thread(this::collectLoop, "recommendation-batcher");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        collector.interrupt();
+        collector.join(TimeUnit.SECONDS.toMillis(5));
+        batchExecutor.shutdown();
+        batchExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Number of listener consumers needed to fill a batch, since each waits for its activity's result.
+     *
+     * @return {@code ai.batching.max-items} when batching is enabled, otherwise 0
+     */
+    public int requiredConsumers() {
+        return enabled ? maxItems : 0;
+    }
+
+    /**
+     * Generates the recommendation for an activity, batched with others when batching is enabled.
+     * Blocks the calling listener thread until the recommendation is available.
+     */
+    public Recommendation recommend(Activity activity) throws InterruptedException {
+        if (!enabled) {
+            return aiService.generateRecommendation(activity);
+        }
+        // Cached analyses need no AI request, so they skip the batch and its wait
+        Optional<Recommendation> cached = aiService.cachedRecommendation(activity);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        PendingActivity item = new PendingActivity(activity, new CompletableFuture<>());
+        pending.add(item);
+        try {
+            return item.result().get(resultTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime
+                    : new IllegalStateException("Failed to generate AI recommendation", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("No batched recommendation for activity " + activity.getId()
+                    + " within " + resultTimeoutMs + " ms", e);
+        }
+    }
+
+    private void collectLoop() {
+        while (running) {
+            List<PendingActivity> batch = new ArrayList<>(maxItems);
+            try {
+                batch.add(pending.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxItems) {
+                    if (pending.drainTo(batch, maxItems - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingActivity next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested: hand over what was collected so no caller waits for nothing
+                pending.drainTo(batch);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                batchExecutor.execute(() -> process(batch));
+            }
+        }
+    }
+
+    private void process(List<PendingActivity> batch) {
+        activities.increment(batch.size());
+        if (batch.size() == 1) {
+            completeSingle(batch.get(0));
+            return;
+        }
+
+        List<Activity> batchActivities = batch.stream().map(PendingActivity::activity).toList();
+        Map<String, Recommendation> recommendations;
+        llmCalls.increment();
+        try {
+            recommendations = aiService.generateRecommendations(batchActivities);
+        } catch (RuntimeException e) {
+            // The request itself failed; fail every item so each goes through its own retry
+            batch.forEach(item -> item.result().completeExceptionally(e));
+            return;
+        }
+
+        int singlePromptChars = batchActivities.stream().mapToInt(a -> aiService.createPromptForActivity(a).length()).sum();
+        int batchPromptChars = aiService.createBatchPromptForActivities(batchActivities).length();
+        promptTokensSaved.increment(Math.max(0, singlePromptChars - batchPromptChars) / (double) CHARS_PER_TOKEN);
+
+        int fallbackCount = 0;
+        for (PendingActivity item : batch) {
+            Recommendation recommendation = recommendations.get(item.activity().getId());
+            if (recommendation != null) {
+                item.result().complete(recommendation);
+            } else {
+                fallbackCount++;
+                completeSingle(item);
+            }
+        }
+        fallbacks.increment(fallbackCount);
+        callsSaved.increment(batch.size() - 1 - fallbackCount);
+        log.debug("Batched {} activities into one AI request, {} fell back to single requests", batch.size(), fallbackCount);
+    }
+
+    private void completeSingle(PendingActivity item) {
+        llmCalls.increment();
+        try {
+            item.result().complete(aiService.generateRecommendation(item.activity()));
+        } catch (RuntimeException e) {
+            item.result().completeExceptionally(e);
+        }
+    }
+
+    private record PendingActivity(Activity activity, CompletableFuture<Recommendation> result) {
+    }
+}
@@ -0,0 +1,218 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.model.RecommendationCacheEntry;
+import com.fitness.aiservice.repository.RecommendationCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Cache of AI analyses keyed by the features of an activity, persisted in MongoDB.
+ *
+ * <p>Near-identical activities share one analysis: the key is the activity type plus duration,
+ * calories and every additional metric rounded down to a bucket. Duration and calories use
+ * {@code ai.cache.duration-bucket-minutes} and {@code ai.cache.calories-bucket}; numeric metrics use
+ * their entry in {@code ai.cache.metric-buckets} ({@code name=width}) or
+ * {@code ai.cache.default-metric-bucket}. Other metrics, such as notes or GPS tracks, would make
+ * nearly every key unique, so they are left out unless listed in {@code ai.cache.key-metrics};
+ * listed ones must match exactly.</p>
+ *
+ * <p>Entries expire {@code ai.cache.ttl-hours} after they are stored, and a scheduled trim keeps at
+ * most {@code ai.cache.max-entries}, evicting the least recently hit first. Hits, misses, the hit
+ * ratio and the tokens and cost avoided are exposed as metrics; cost uses
+ * {@code ai.cache.cost-per-million-tokens}.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecommendationCache {
+
+    private final RecommendationCacheRepository cacheRepository;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.cache.enabled:true}")
+    private boolean enabled;
+    @Value("${ai.cache.ttl-hours:168}")
+    private long ttlHours;
+    @Value("${ai.cache.max-entries:10000}")
+    private int maxEntries;
+    @Value("${ai.cache.duration-bucket-minutes:5}")
+    private int durationBucketMinutes;
+    @Value("${ai.cache.calories-bucket:50}")
+    private int caloriesBucket;
+    @Value("${ai.cache.default-metric-bucket:10}")
+    private double defaultMetricBucket;
+    @Value("${ai.cache.metric-buckets:}")
+    private List<String> metricBucketSettings;
+    @Value("${ai.cache.key-metrics:}")
+    private Set<String> keyMetrics;
+    @Value("${ai.cache.cost-per-million-tokens:0.40}")
+    private double costPerMillionTokens;
+
+    private final Map<String, Double> metricBuckets = new HashMap<>();
+    private Counter hits;
+    private Counter misses;
+    private Counter tokensAvoided;
+    private Counter costAvoided;
+
+    @PostConstruct
+    void init() {
+        for (String setting : metricBucketSettings) {
+            if (setting.isBlank()) {
+                continue;
+            }
+            int separator = setting.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=width in ai.cache.metric-buckets but got " + setting);
+            }
+            metricBuckets.put(setting.substring(0, separator).trim(), Double.parseDouble(setting.substring(separator + 1).trim()));
+        }
+        hits = meterRegistry.counter("ai.cache.hits");
+        misses = meterRegistry.counter("ai.cache.misses");
+        tokensAvoided = meterRegistry.counter("ai.cache.tokens-avoided");
+        costAvoided = Counter.builder("ai.cache.cost-avoided").baseUnit("usd").register(meterRegistry);
+        Gauge.builder("ai.cache.hit-ratio", () -> {
+            double lookups = hits.count() + misses.count();
+            return lookups == 0 ? 0 : hits.count() / lookups;
+        }).register(meterRegistry);
+    }
+
+    /**
+     * Returns a recommendation for the activity built from a cached analysis, if one exists.
+     */
+    public Optional<Recommendation> lookup(Activity activity) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = key(activity);
+        Optional<RecommendationCacheEntry> entry = cacheRepository.findById(key)
+                .filter(cached -> cached.getExpiresAt().isAfter(LocalDateTime.now()));
+        if (entry.isEmpty()) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        tokensAvoided.increment(entry.get().getTokens());
+        costAvoided.increment(entry.get().getTokens() * costPerMillionTokens / 1_000_000);
+        mongoTemplate.updateFirst(new Query(where("_id").is(key)),
+                new Update().inc("hits", 1).set("lastHitAt", LocalDateTime.now()),
+                RecommendationCacheEntry.class);
+        log.debug("Recommendation cache hit for activity {} with key {}", activity.getId(), key);
+
+        RecommendationCacheEntry cached = entry.get();
+        return Optional.of(Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType().name())
+                .recommendation(cached.getRecommendation())
+                .improvements(cached.getImprovements())
+                .suggestions(cached.getSuggestions())
+                .safety(cached.getSafety())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Stores the analysis generated for an activity under its feature key.
+     *
+     * @param tokens tokens the AI request for this analysis consumed
+     */
+    public void store(Activity activity, Recommendation recommendation, long tokens) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            cacheRepository.save(RecommendationCacheEntry.builder()
+                    .key(key(activity))
+                    .recommendation(recommendation.getRecommendation())
+                    .improvements(recommendation.getImprovements())
+                    .suggestions(recommendation.getSuggestions())
+                    .safety(recommendation.getSafety())
+                    .tokens(tokens)
+                    .createdAt(now)
+                    .lastHitAt(now)
+                    .expiresAt(now.plusHours(ttlHours))
+                    .build());
+        } catch (Exception e) {
+            // The recommendation itself is fine; only later activities lose the shortcut
+            log.warn("Could not cache recommendation for activity {}: {}", activity.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Evicts the least recently hit entries beyond {@code ai.cache.max-entries}.
+     */
+    @Scheduled(fixedDelayString = "${ai.cache.trim-interval-ms:60000}")
+    public void trim() {
+        if (!enabled) {
+            return;
+        }
+        long excess = cacheRepository.count() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        Query oldest = new Query().with(Sort.by("lastHitAt")).limit((int) excess);
+        oldest.fields().include("_id");
+        List<String> keys = mongoTemplate.find(oldest, RecommendationCacheEntry.class).stream()
+                .map(RecommendationCacheEntry::getKey)
+                .toList();
+        cacheRepository.deleteAllById(keys);
+        log.debug("Evicted {} recommendation cache entries", keys.size());
+    }
+
+    /**
+     * Builds the feature key of an activity, e.g. {@code RUNNING|d45|c500|avgHeartRate=150|distance=8}.
+     * Non-numeric metrics only count when they are listed in {@code ai.cache.key-metrics}.
+     */
+    String key(Activity activity) {
+        StringBuilder key = new StringBuilder()
+                .append(activity.getType())
+                .append("|d").append(bucket(activity.getDuration(), durationBucketMinutes))
+                .append("|c").append(bucket(activity.getCaloriesBurned(), caloriesBucket));
+        if (activity.getAdditionalMetrics() != null) {
+            // Sorted so the same metrics always produce the same key
+            new TreeMap<>(activity.getAdditionalMetrics()).forEach((name, value) -> {
+                if (value instanceof Number number) {
+                    key.append('|').append(name).append('=')
+                            .append(bucket(number.doubleValue(), metricBuckets.getOrDefault(name, defaultMetricBucket)));
+                } else if (value != null && keyMetrics.contains(name)) {
+                    key.append('|').append(name).append('=').append(value);
+                }
+            });
+        }
+        return key.toString();
+    }
+
+    private static String bucket(Integer value, int width) {
+        return value == null ? "-" : String.valueOf(Math.floorDiv(value, width) * width);
+    }
+
+    private static String bucket(double value, double width) {
+        double bucket = Math.floor(value / width) * width;
+        return bucket == Math.rint(bucket) ? String.valueOf((long) bucket) : String.valueOf(bucket);
+    }
+}
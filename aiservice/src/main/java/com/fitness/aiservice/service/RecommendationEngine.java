@@ -0,0 +1,20 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+
+/**
+ * Produces a recommendation for an activity in-process, without calling an AI model.
+ *
+ * <p>Implementations serve as the instant first answer that the AI result later replaces, and as
+ * the fallback when the AI cannot be asked, so they must answer quickly and for any activity.</p>
+ *
+ * @see RuleBasedRecommendationEngine
+ */
+public interface RecommendationEngine {
+
+    /**
+     * Builds a complete recommendation for the activity, with every section filled in.
+     */
+    Recommendation recommend(Activity activity);
+}
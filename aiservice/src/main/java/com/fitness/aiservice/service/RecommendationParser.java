@@ -0,0 +1,252 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fitness.aiservice.model.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the JSON the model writes into {@link Recommendation} fields in a single pass.
+ *
+ * <p>The text is read token by token without building a tree. Anything before the first brace or
+ * bracket, such as a markdown code fence, and anything after the matching close is ignored.
+ * Unknown fields are skipped and values of an unexpected type are tolerated. When the JSON breaks
+ * off or turns invalid, the sections read so far are kept and the recommendation is marked
+ * partial.</p>
+ */
+@Slf4j
+public class RecommendationParser {
+
+    static final List<String> DEFAULT_IMPROVEMENTS = Collections.singletonList("No specific improvements provided");
+    static final List<String> DEFAULT_SUGGESTIONS = Collections.singletonList("No specific suggestions provided");
+    static final List<String> DEFAULT_SAFETY = Collections.singletonList("Follow general safety guidelines");
+
+    private static final String[] ANALYSIS_KEYS = {"overall", "pace", "heartRate", "caloriesBurned"};
+    private static final String[] ANALYSIS_PREFIXES = {"Overall:", "Pace:", "Heart Rate:", "Calories:"};
+
+    private final JsonFactory jsonFactory;
+
+    public RecommendationParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Parses a single analysis object.
+     *
+     * @return the sections found, or null if the text holds no JSON object
+     */
+    public Recommendation parse(char[] text, int offset, int length) {
+        int start = indexOf(text, offset, length, '{');
+        if (start < 0) {
+            return null;
+        }
+        Recommendation recommendation = new Recommendation();
+        try (JsonParser parser = jsonFactory.createParser(text, start, offset + length - start)) {
+            parser.nextToken();
+            readObject(parser, recommendation);
+        } catch (IOException e) {
+            log.debug("AI response breaks off or is invalid: {}", e.getMessage());
+            recommendation.setPartial(true);
+        }
+        return recommendation;
+    }
+
+    /**
+     * Parses an array of analysis objects, each carrying the ID of its activity.
+     *
+     * @return the complete analyses, with only the activity ID and the sections set
+     */
+    List<Recommendation> parseAll(char[] text, int offset, int length) {
+        List<Recommendation> recommendations = new ArrayList<>();
+        int start = indexOf(text, offset, length, '[');
+        if (start < 0) {
+            return recommendations;
+        }
+        try (JsonParser parser = jsonFactory.createParser(text, start, offset + length - start)) {
+            parser.nextToken();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                Recommendation recommendation = new Recommendation();
+                readObject(parser, recommendation);
+                recommendations.add(recommendation);
+            }
+        } catch (IOException e) {
+            // The analysis being read when the JSON broke off is dropped; earlier ones are complete
+            log.debug("Batched AI response breaks off or is invalid: {}", e.getMessage());
+        }
+        return recommendations;
+    }
+
+    /**
+     * Reads one top-level field of an analysis object into the recommendation. The parser must be
+     * at the first token of the value and is left at its last token.
+     *
+     * @return true if the field is a section of the recommendation, false if it was skipped
+     */
+    boolean readField(JsonParser parser, String field, Recommendation recommendation) throws IOException {
+        switch (field) {
+            case "analysis" -> recommendation.setRecommendation(readAnalysis(parser));
+            case "improvements" -> recommendation.setImprovements(readPairs(parser, "area", "recommendation"));
+            case "suggestions" -> recommendation.setSuggestions(readPairs(parser, "workout", "description"));
+            case "safety" -> recommendation.setSafety(readStrings(parser));
+            case "activityId" -> {
+                recommendation.setActivityId(scalarText(parser));
+                return false;
+            }
+            default -> {
+                parser.skipChildren();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gives every section that was not found its default.
+     */
+    static void fillMissingSections(Recommendation recommendation) {
+        if (recommendation.getImprovements() == null || recommendation.getImprovements().isEmpty()) {
+            recommendation.setImprovements(DEFAULT_IMPROVEMENTS);
+        }
+        if (recommendation.getSuggestions() == null || recommendation.getSuggestions().isEmpty()) {
+            recommendation.setSuggestions(DEFAULT_SUGGESTIONS);
+        }
+        if (recommendation.getSafety() == null || recommendation.getSafety().isEmpty()) {
+            recommendation.setSafety(DEFAULT_SAFETY);
+        }
+    }
+
+    private void readObject(JsonParser parser, Recommendation recommendation) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            readField(parser, field, recommendation);
+        }
+    }
+
+    /**
+     * Returns the analysis paragraphs in a fixed order, or null if the value is not an object.
+     */
+    private static String readAnalysis(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String[] values = new String[ANALYSIS_KEYS.length];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            int index = indexOf(ANALYSIS_KEYS, field);
+            if (index < 0) {
+                parser.skipChildren();
+            } else {
+                values[index] = scalarText(parser);
+            }
+        }
+        StringBuilder analysis = new StringBuilder(256);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                if (!analysis.isEmpty()) {
+                    analysis.append("\n\n");
+                }
+                analysis.append(ANALYSIS_PREFIXES[i]).append(values[i]);
+            }
+        }
+        return analysis.toString().trim();
+    }
+
+    /**
+     * Reads an array of two-field objects as "first: second" lines. Plain strings are taken as is.
+     */
+    private static List<String> readPairs(JsonParser parser, String first, String second) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<String> lines = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                String firstValue = "";
+                String secondValue = "";
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    if (first.equals(field)) {
+                        firstValue = scalarText(parser);
+                    } else if (second.equals(field)) {
+                        secondValue = scalarText(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                lines.add(firstValue + ": " + secondValue);
+            } else if (token.isScalarValue()) {
+                lines.add(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> readStrings(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<String> lines = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token.isScalarValue()) {
+                lines.add(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the text of a scalar value, or an empty string for an object or array.
+     */
+    private static String scalarText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    private static int indexOf(char[] text, int offset, int length, char c) {
+        for (int i = offset; i < offset + length; i++) {
+            if (text[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,273 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityType;
+import com.fitness.aiservice.model.Recommendation;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Deterministic recommendation engine built from per-activity-type rules.
+ *
+ * <p>Each {@link ActivityType} has a profile with its usual session length, calorie rate, pace
+ * range, follow-up workouts and safety points. The activity's duration, calories and the
+ * {@code averageHeartRate}, {@code maxHeartRate} and {@code distance} (km) metrics are compared
+ * against it. Heart rate zones assume a maximum of 190 bpm, since the athlete's age is unknown.
+ * The result has the same shape as an AI analysis.</p>
+ */
+@Service
+public class RuleBasedRecommendationEngine implements RecommendationEngine {
+
+    /** Maximum heart rate assumed when estimating zones */
+    private static final int ESTIMATED_MAX_HEART_RATE = 190;
+
+    /** Effort of heart rate zones 1 to 5, indexed by zone */
+    private static final String[] ZONE_EFFORTS = {"", "very light", "easy aerobic", "moderate", "hard", "maximal"};
+
+    private static final Map<ActivityType, Profile> PROFILES = new EnumMap<>(ActivityType.class);
+
+    static {
+        PROFILES.put(ActivityType.RUNNING, new Profile("run", 20, 75, 8, 15, PaceUnit.MIN_PER_KM, 4.5, 7.0,
+                "Tempo run: 20 minutes at a comfortably hard pace after a 10 minute warm-up",
+                "Easy run: 30 minutes at a conversational pace",
+                List.of("Wear supportive running shoes", "Increase weekly distance by no more than 10%")));
+        PROFILES.put(ActivityType.WALKING, new Profile("walk", 15, 90, 3, 7, PaceUnit.MIN_PER_KM, 9.0, 13.0,
+                "Brisk walk: 40 minutes with one fast minute every five minutes",
+                "Easy walk: 30 minutes on flat ground",
+                List.of("Wear comfortable, supportive footwear", "Stay visible near traffic")));
+        PROFILES.put(ActivityType.CYCLING, new Profile("ride", 20, 120, 6, 14, PaceUnit.KM_PER_HOUR, 28, 18,
+                "Tempo ride: 3 x 10 minutes at a strong, steady effort",
+                "Recovery spin: 45 minutes in an easy gear",
+                List.of("Always wear a helmet", "Check brakes and tyres before riding")));
+        PROFILES.put(ActivityType.SWIMMING, new Profile("swim", 15, 75, 7, 12, PaceUnit.MIN_PER_100M, 1.75, 3.0,
+                "Interval swim: 8 x 50 m with 20 seconds rest",
+                "Technique swim: 20 minutes of easy drills",
+                List.of("Swim where a lifeguard is present", "Never swim alone in open water")));
+        PROFILES.put(ActivityType.WEIGHT_TRAINING, new Profile("strength session", 20, 90, 3, 8, PaceUnit.NONE, 0, 0,
+                "Progressive overload: add 2.5 to 5% load to your main lifts next session",
+                "Mobility session: 20 minutes of light mobility work",
+                List.of("Use a spotter for heavy lifts", "Keep good form rather than adding weight")));
+        PROFILES.put(ActivityType.YOGA, new Profile("yoga session", 15, 90, 2, 5, PaceUnit.NONE, 0, 0,
+                "Flow practice: 45 minutes of vinyasa flow",
+                "Restorative yoga: 30 minutes of supported poses",
+                List.of("Do not force poses past a comfortable range", "Use props to support alignment")));
+        PROFILES.put(ActivityType.HIIT, new Profile("HIIT session", 10, 45, 10, 18, PaceUnit.NONE, 0, 0,
+                "Interval session: 8 rounds of 30 seconds hard and 30 seconds easy",
+                "Active recovery: 30 minutes of light cardio",
+                List.of("Allow 48 hours between high-intensity sessions", "Land softly on jumps to protect your joints")));
+        PROFILES.put(ActivityType.CARDIO, new Profile("cardio session", 15, 90, 6, 12, PaceUnit.NONE, 0, 0,
+                "Steady cardio: 40 minutes at a moderate, sustained effort",
+                "Light cardio: 25 minutes at an easy effort",
+                List.of("Build intensity gradually over the first minutes")));
+        PROFILES.put(ActivityType.STRETCHING, new Profile("stretching session", 5, 60, 1.5, 4, PaceUnit.NONE, 0, 0,
+                "Full-body stretch: 20 minutes, holding each stretch for 30 seconds",
+                "Gentle mobility: 10 minutes of dynamic movement",
+                List.of("Stretch to mild tension, never to pain", "Do not bounce in a stretch")));
+        PROFILES.put(ActivityType.OTHER, new Profile("workout", 15, 90, 3, 12, PaceUnit.NONE, 0, 0,
+                "Mixed workout: 30 minutes combining cardio and strength",
+                "Easy activity: 30 minutes of walking or light cycling",
+                List.of("Warm up before you start")));
+    }
+
+    @Override
+    public Recommendation recommend(Activity activity) {
+        ActivityType type = activity.getType() == null ? ActivityType.OTHER : activity.getType();
+        Profile profile = PROFILES.get(type);
+        Integer duration = positive(activity.getDuration());
+        Integer calories = positive(activity.getCaloriesBurned());
+        Map<String, Object> metrics = activity.getAdditionalMetrics() == null ? Map.of() : activity.getAdditionalMetrics();
+        Double averageHeartRate = metric(metrics, "averageHeartRate", "avgHeartRate", "heartRate");
+        Double maxHeartRate = metric(metrics, "maxHeartRate");
+        Double distance = metric(metrics, "distance");
+
+        int zone = averageHeartRate == null ? 0 : heartRateZone(averageHeartRate);
+        Double caloriesPerMinute = duration == null || calories == null ? null : calories / (double) duration;
+        boolean longSession = duration != null && duration > profile.longMinutes();
+        boolean hard = zone >= 4 || longSession;
+        boolean nearMax = maxHeartRate != null && maxHeartRate >= ESTIMATED_MAX_HEART_RATE * 0.95;
+
+        String analysis = "Overall:" + overall(profile, duration, zone, caloriesPerMinute)
+                + "\n\nPace:" + pace(profile, duration, distance)
+                + "\n\nHeart Rate:" + heartRate(averageHeartRate, maxHeartRate, zone)
+                + "\n\nCalories:" + calories(profile, calories, caloriesPerMinute);
+
+        List<String> improvements = new ArrayList<>();
+        if (duration != null && duration < profile.shortMinutes()) {
+            improvements.add("Duration: Extend sessions gradually towards " + profile.shortMinutes() * 2
+                    + " minutes to build endurance");
+        }
+        if (zone == 5) {
+            improvements.add("Intensity: Most of the session was near maximal effort; keep easy days in zone 2");
+        } else if (zone == 1 || (zone == 0 && caloriesPerMinute != null && caloriesPerMinute < profile.minCaloriesPerMinute())) {
+            improvements.add("Intensity: Add a few short, harder efforts to raise the training stimulus");
+        }
+        if (longSession && zone >= 4) {
+            improvements.add("Recovery: Follow a long, hard session with an easy day");
+        }
+        if (averageHeartRate == null) {
+            improvements.add("Tracking: Record heart rate to judge your effort more precisely");
+        }
+        if (improvements.isEmpty()) {
+            improvements.add("Consistency: Keep this routine two to three times a week");
+        }
+
+        // After a hard session the easy workout comes first
+        List<String> suggestions = hard
+                ? List.of(profile.recovery(), profile.progression())
+                : List.of(profile.progression(), profile.recovery());
+
+        List<String> safety = new ArrayList<>(profile.safety());
+        if (nearMax) {
+            safety.add("Your heart rate came close to its maximum; stop and rest if you feel dizzy or short of breath");
+        }
+        safety.add("Stay hydrated");
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(type.name())
+                .recommendation(analysis)
+                .improvements(improvements)
+                .suggestions(suggestions)
+                .safety(safety)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static String overall(Profile profile, Integer duration, int zone, Double caloriesPerMinute) {
+        if (duration == null) {
+            return "A " + profile.noun() + " without a recorded duration.";
+        }
+        String length = duration < profile.shortMinutes() ? "Short"
+                : duration > profile.longMinutes() ? "Long"
+                : "Solid";
+        String effort = zone > 0 ? (zone == 2 ? " at an " : " at a ") + ZONE_EFFORTS[zone] + " effort"
+                : caloriesPerMinute == null ? ""
+                : caloriesPerMinute < profile.minCaloriesPerMinute() ? " at a light effort"
+                : caloriesPerMinute > profile.maxCaloriesPerMinute() ? " at a high effort"
+                : " at a moderate effort";
+        return length + " " + profile.noun() + " of " + duration + " minutes" + effort + ".";
+    }
+
+    private static String pace(Profile profile, Integer duration, Double distance) {
+        if (profile.paceUnit() == PaceUnit.NONE) {
+            return "Pace does not apply to a " + profile.noun() + "; effort is judged by duration and heart rate.";
+        }
+        if (duration == null || distance == null || distance <= 0) {
+            return "No distance recorded, so pace could not be assessed.";
+        }
+        double value;
+        String text;
+        switch (profile.paceUnit()) {
+            case MIN_PER_KM -> {
+                value = duration / distance;
+                text = "Average pace " + minutesAndSeconds(value) + " min/km";
+            }
+            case MIN_PER_100M -> {
+                value = duration / (distance * 10);
+                text = "Average pace " + minutesAndSeconds(value) + " min/100 m";
+            }
+            default -> {
+                value = distance / (duration / 60.0);
+                text = String.format(Locale.ROOT, "Average speed %.1f km/h", value);
+            }
+        }
+        // Times per distance are fast when low, speeds when high
+        boolean speed = profile.paceUnit() == PaceUnit.KM_PER_HOUR;
+        boolean fast = speed ? value >= profile.fastPace() : value <= profile.fastPace();
+        boolean easy = speed ? value <= profile.easyPace() : value >= profile.easyPace();
+        String judgement = fast ? "a fast" : easy ? "an easy" : "a steady";
+        return text + ", " + judgement + " pace for a " + profile.noun() + ".";
+    }
+
+    private static String heartRate(Double average, Double max, int zone) {
+        if (average == null) {
+            return max == null ? "No heart rate recorded." : "Peak heart rate " + Math.round(max) + " bpm; no average recorded.";
+        }
+        String text = "Average heart rate " + Math.round(average) + " bpm, about "
+                + Math.round(average * 100 / ESTIMATED_MAX_HEART_RATE) + "% of an estimated maximum of "
+                + ESTIMATED_MAX_HEART_RATE + " bpm (zone " + zone + ", " + ZONE_EFFORTS[zone] + " effort).";
+        return max == null ? text : text + " Peak " + Math.round(max) + " bpm.";
+    }
+
+    private static String calories(Profile profile, Integer calories, Double caloriesPerMinute) {
+        if (calories == null) {
+            return "No calories recorded.";
+        }
+        if (caloriesPerMinute == null) {
+            return calories + " kcal burned.";
+        }
+        String range = caloriesPerMinute < profile.minCaloriesPerMinute() ? "below"
+                : caloriesPerMinute > profile.maxCaloriesPerMinute() ? "above"
+                : "within";
+        return String.format(Locale.ROOT, "%d kcal, about %.1f kcal per minute, %s the usual %s to %s kcal per minute for a %s.",
+                calories, caloriesPerMinute, range, number(profile.minCaloriesPerMinute()),
+                number(profile.maxCaloriesPerMinute()), profile.noun());
+    }
+
+    private static int heartRateZone(double averageHeartRate) {
+        double share = averageHeartRate / ESTIMATED_MAX_HEART_RATE;
+        return share < 0.6 ? 1 : share < 0.7 ? 2 : share < 0.8 ? 3 : share < 0.9 ? 4 : 5;
+    }
+
+    private static String minutesAndSeconds(double minutes) {
+        long seconds = Math.round(minutes * 60);
+        return String.format(Locale.ROOT, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static Integer positive(Integer value) {
+        return value == null || value <= 0 ? null : value;
+    }
+
+    /**
+     * Returns the first of the named metrics that holds a positive number, or null.
+     */
+    private static Double metric(Map<String, Object> metrics, String... names) {
+        for (String name : names) {
+            Object value = metrics.get(name);
+            double number = Double.NaN;
+            if (value instanceof Number n) {
+                number = n.doubleValue();
+            } else if (value instanceof String s) {
+                try {
+                    number = Double.parseDouble(s.trim());
+                } catch (NumberFormatException e) {
+                    // Not a number; try the next name
+                }
+            }
+            if (number > 0) {
+                return number;
+            }
+        }
+        return null;
+    }
+
+    private enum PaceUnit {
+        NONE,
+        MIN_PER_KM,
+        MIN_PER_100M,
+        KM_PER_HOUR
+    }
+
+    /**
+     * What a typical session of one activity type looks like.
+     *
+     * @param fastPace pace at or beyond which the session counts as fast, in {@code paceUnit}
+     * @param easyPace pace at or beyond which the session counts as easy, in {@code paceUnit}
+     */
+    private record Profile(String noun, int shortMinutes, int longMinutes,
+                           double minCaloriesPerMinute, double maxCaloriesPerMinute,
+                           PaceUnit paceUnit, double fastPace, double easyPace,
+                           String progression, String recovery, List<String> safety) {
+    }
+}
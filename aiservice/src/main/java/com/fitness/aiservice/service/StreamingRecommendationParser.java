@@ -0,0 +1,105 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the JSON object of a streamed AI answer as its text arrives.
+ *
+ * <p>Text fragments may split the JSON anywhere. Each top-level field is handed to the callback as
+ * soon as its value is complete, as a parser over the buffered tokens of that value, so the
+ * analysis can be used before the rest of the answer has been generated. Text before the opening
+ * brace, such as a markdown code fence, and anything after the closing brace is ignored.</p>
+ */
+class StreamingRecommendationParser {
+
+    private final FieldHandler onField;
+    private final JsonParser parser;
+
+    private boolean started;
+    private boolean finished;
+    private int depth;
+    private String field;
+    /** Tokens of the top-level field value being read, null between fields */
+    private TokenBuffer value;
+
+    StreamingRecommendationParser(JsonFactory jsonFactory, FieldHandler onField) throws IOException {
+        this.onField = onField;
+        this.parser = jsonFactory.createNonBlockingByteArrayParser();
+    }
+
+    /**
+     * Consumes the next fragment of answer text, reporting every top-level field it completes.
+     *
+     * @throws IOException if the text is not valid JSON
+     */
+    void feed(String text) throws IOException {
+        if (finished || text.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            int start = text.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            text = text.substring(start);
+            started = true;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+        JsonToken token;
+        // Stop at the closing brace; the rest of the input is never read
+        while (!finished && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+            handle(token);
+        }
+    }
+
+    /**
+     * Returns true once the closing brace of the object has been read.
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        if (token == JsonToken.FIELD_NAME && depth == 1) {
+            field = parser.currentName();
+            value = new TokenBuffer((ObjectCodec) null, false);
+            return;
+        }
+        if (token.isStructStart()) {
+            depth++;
+        } else if (token.isStructEnd()) {
+            depth--;
+        }
+        if (value != null) {
+            value.copyCurrentEvent(parser);
+            // Back at the level of the enclosing object: the scalar or structure is complete
+            if (depth == 1) {
+                try (JsonParser fieldValue = value.asParser()) {
+                    value = null;
+                    fieldValue.nextToken();
+                    onField.accept(field, fieldValue);
+                }
+            }
+        }
+        if (depth == 0) {
+            finished = true;
+        }
+    }
+
+    /**
+     * Receives a completed top-level field, with the parser at the first token of its value.
+     */
+    @FunctionalInterface
+    interface FieldHandler {
+        void accept(String field, JsonParser value) throws IOException;
+    }
+}
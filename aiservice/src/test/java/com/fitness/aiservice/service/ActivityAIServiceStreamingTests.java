@@ -0,0 +1,196 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityType;
+import com.fitness.aiservice.model.Recommendation;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link ActivityAIService#streamRecommendation} against a local stub that sends the answer
+ * as server-sent events, a few characters at a time.
+ */
+class ActivityAIServiceStreamingTests {
+
+    private static final String ANSWER = """
+            ```json
+            {
+              "analysis": {
+                "overall": "Solid tempo run with an even effort.",
+                "pace": "Held 5′30″/km, a \\"comfortable\\" pace.",
+                "heartRate": "Mostly in zone 3.",
+                "caloriesBurned": "In line with the distance."
+              },
+              "improvements": [
+                {"area": "Cadence", "recommendation": "Aim for 170 steps per minute."}
+              ],
+              "suggestions": [
+                {"workout": "Intervals", "description": "6 x 400 m at 5k pace."},
+                {"workout": "Long run", "description": "90 minutes easy."}
+              ],
+              "safety": ["Warm up for 10 minutes", "Stay hydrated"]
+            }
+            ```""";
+    private static final int PIECE_LENGTH = 30;
+    private static final long PIECE_DELAY_MS = 40;
+
+    private HttpServer stub;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /** Answer text the stub streams for the next request */
+    private volatile String answer = ANSWER;
+    /** When the stub wrote its last event */
+    private volatile long lastEventSentNanos;
+
+    private GeminiConcurrencyLimiter limiter;
+    private ActivityAIService aiService;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.createContext("/", this::handle);
+        stub.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        limiter = GeminiTestFixtures.limiter(meterRegistry);
+        GeminiService geminiService = GeminiTestFixtures.geminiService(stub, limiter, meterRegistry);
+
+        // A cache that is not initialized stays disabled
+        // Streamed answers bypass the router
+        aiService = new ActivityAIService(geminiService, null, new RecommendationCache(null, null, meterRegistry),
+                new RuleBasedRecommendationEngine());
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+    }
+
+    @Test
+    void analysisIsPublishedBeforeTheStreamEnds() {
+        List<Recommendation> updates = new ArrayList<>();
+        List<Long> updateNanos = new ArrayList<>();
+
+        Recommendation recommendation = aiService.streamRecommendation(activity(), update -> {
+            updates.add(copy(update));
+            updateNanos.add(System.nanoTime());
+        });
+
+        Recommendation first = updates.get(0);
+        assertTrue(first.isPartial());
+        assertTrue(first.getRecommendation().startsWith("Overall:Solid tempo run"));
+        assertTrue(first.getImprovements().isEmpty());
+        long earlyMs = (lastEventSentNanos - updateNanos.get(0)) / 1_000_000;
+        assertTrue(earlyMs > 300, "analysis arrived only " + earlyMs + " ms before the last event");
+
+        // analysis, improvements, suggestions, safety, then the completed recommendation
+        assertEquals(5, updates.size());
+        assertTrue(updates.get(3).isPartial());
+        assertFalse(recommendation.isPartial());
+        assertTrue(recommendation.getRecommendation().contains("Pace:Held 5′30″/km, a \"comfortable\" pace."));
+        assertEquals(List.of("Cadence: Aim for 170 steps per minute."), recommendation.getImprovements());
+        assertEquals(List.of("Intervals: 6 x 400 m at 5k pace.", "Long run: 90 minutes easy."), recommendation.getSuggestions());
+        assertEquals(List.of("Warm up for 10 minutes", "Stay hydrated"), recommendation.getSafety());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void malformedAnswerKeepsCompletedSections() {
+        answer = ANSWER.substring(0, ANSWER.indexOf("\"suggestions\"")) + "\"suggestions\": [oops";
+
+        List<Recommendation> updates = new ArrayList<>();
+        Recommendation recommendation = aiService.streamRecommendation(activity(), update -> updates.add(copy(update)));
+
+        assertEquals(3, updates.size());
+        assertFalse(recommendation.isPartial());
+        assertTrue(recommendation.getRecommendation().startsWith("Overall:Solid tempo run"));
+        assertEquals(List.of("Cadence: Aim for 170 steps per minute."), recommendation.getImprovements());
+        assertEquals(List.of("No specific suggestions provided"), recommendation.getSuggestions());
+        assertEquals(List.of("Follow general safety guidelines"), recommendation.getSafety());
+    }
+
+    @Test
+    void answerWithoutAnalysisFallsBackToLocalEngine() {
+        answer = "I cannot analyze this activity.";
+
+        List<Recommendation> updates = new ArrayList<>();
+        Recommendation recommendation = aiService.streamRecommendation(activity(), update -> updates.add(copy(update)));
+
+        assertEquals(1, updates.size());
+        assertFalse(recommendation.isPartial());
+        assertTrue(recommendation.getRecommendation().startsWith("Overall:Solid run of 45 minutes"));
+        assertTrue(recommendation.getRecommendation().contains("Pace:Average pace 5:29 min/km"));
+        assertEquals(0, limiter.inFlight());
+    }
+
+    private static Activity activity() {
+        Activity activity = new Activity();
+        activity.setId("activity-1");
+        activity.setUserId("user-1");
+        activity.setType(ActivityType.RUNNING);
+        activity.setDuration(45);
+        activity.setCaloriesBurned(520);
+        activity.setAdditionalMetrics(Map.of("distance", 8.2));
+        return activity;
+    }
+
+    private static Recommendation copy(Recommendation recommendation) {
+        // Updates reuse one instance, so keep what each of them looked like
+        return Recommendation.builder()
+                .recommendation(recommendation.getRecommendation())
+                .improvements(recommendation.getImprovements())
+                .suggestions(recommendation.getSuggestions())
+                .safety(recommendation.getSafety())
+                .partial(recommendation.isPartial())
+                .build();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String text = answer;
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int start = 0; start < text.length(); start += PIECE_LENGTH) {
+                    String piece = text.substring(start, Math.min(text.length(), start + PIECE_LENGTH));
+                    ObjectNode chunk = objectMapper.createObjectNode();
+                    chunk.putArray("candidates").addObject()
+                            .putObject("content").putArray("parts").addObject().put("text", piece);
+                    if (start + PIECE_LENGTH >= text.length()) {
+                        chunk.putObject("usageMetadata").put("promptTokenCount", 200).put("totalTokenCount", 400);
+                    }
+                    out.write(("data: " + objectMapper.writeValueAsString(chunk) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    lastEventSentNanos = System.nanoTime();
+                    Thread.sleep(PIECE_DELAY_MS);
+                }
+            }
+        } catch (IOException e) {
+            // The client stopped reading and closed the connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.fitness.aiservice.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link GeminiService} against a local stub whose response time is chosen per request number.
+ */
+class GeminiServiceHedgingTests {
+
+    private static final long FAST_MS = 10;
+    /** Enough fast calls that the cold first connection does not set the p95 */
+    private static final int WARM_UP = 40;
+
+    private HttpServer stub;
+    private final AtomicInteger requests = new AtomicInteger();
+    /** Delay in ms by request number (1-based); requests not listed answer after FAST_MS */
+    private final Map<Integer, Long> delays = new ConcurrentHashMap<>();
+    /** Status codes by request number; requests not listed answer 200 */
+    private final Map<Integer, Integer> statuses = new ConcurrentHashMap<>();
+
+    private SimpleMeterRegistry meterRegistry;
+    private GeminiConcurrencyLimiter limiter;
+    private GeminiService geminiService;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.createContext("/", this::handle);
+        stub.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = GeminiTestFixtures.limiter(meterRegistry);
+        geminiService = GeminiTestFixtures.geminiService(stub, limiter, meterRegistry);
+        ReflectionTestUtils.setField(geminiService, "hedgingEnabled", true);
+        ReflectionTestUtils.setField(geminiService, "hedgeMaxRate", 1.0);
+        ReflectionTestUtils.setField(geminiService, "hedgeMaxBurst", 5.0);
+        ReflectionTestUtils.setField(geminiService, "hedgeMinDelayMs", 100L);
+        ReflectionTestUtils.setField(geminiService, "hedgeMinSamples", 5L);
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+    }
+
+    @Test
+    void hedgeAnswersWhenPrimaryIsSlow() throws InterruptedException {
+        warmUp(WARM_UP);
+        delays.put(WARM_UP + 1, 3_000L);
+
+        long started = System.nanoTime();
+        String answer = geminiService.getAnswer("slow prompt");
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals("answer " + (WARM_UP + 2), answer);
+        assertTrue(elapsedMs < 1_500, "hedged call took " + elapsedMs + " ms");
+        assertEquals(1.0, meterRegistry.counter("ai.gemini.hedge.fired").count());
+        assertEquals(1.0, meterRegistry.counter("ai.gemini.hedge.won").count());
+        // The cancelled primary gives its slot back
+        awaitIdleLimiter();
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() {
+        warmUp(WARM_UP);
+
+        assertEquals("answer " + (WARM_UP + 1), geminiService.getAnswer("fast prompt"));
+        assertEquals(WARM_UP + 1, requests.get());
+        assertEquals(0.0, meterRegistry.counter("ai.gemini.hedge.fired").count());
+    }
+
+    @Test
+    void exhaustedBudgetWaitsForSlowPrimary() {
+        ReflectionTestUtils.setField(geminiService, "hedgeMaxRate", 0.0);
+        warmUp(WARM_UP);
+        delays.put(WARM_UP + 1, 1_000L);
+
+        long started = System.nanoTime();
+        assertEquals("answer " + (WARM_UP + 1), geminiService.getAnswer("slow prompt"));
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue(elapsedMs >= 1_000, "unhedged call took " + elapsedMs + " ms");
+        assertEquals(0.0, meterRegistry.counter("ai.gemini.hedge.fired").count());
+        assertEquals(1.0, meterRegistry.counter("ai.gemini.hedge.skipped", "reason", "budget").count());
+    }
+
+    @Test
+    void primaryFailureFailsTheCall() {
+        warmUp(WARM_UP);
+        statuses.put(WARM_UP + 1, 500);
+
+        assertThrows(WebClientResponseException.InternalServerError.class, () -> geminiService.getAnswer("failing prompt"));
+        assertEquals(0.0, meterRegistry.counter("ai.gemini.hedge.fired").count());
+    }
+
+    @Test
+    void failedHedgeDoesNotFailTheCall() {
+        warmUp(WARM_UP);
+        delays.put(WARM_UP + 1, 1_000L);
+        statuses.put(WARM_UP + 2, 500);
+
+        assertEquals("answer " + (WARM_UP + 1), geminiService.getAnswer("slow prompt"));
+        assertEquals(1.0, meterRegistry.counter("ai.gemini.hedge.fired").count());
+        assertEquals(0.0, meterRegistry.counter("ai.gemini.hedge.won").count());
+    }
+
+    private void warmUp(int calls) {
+        for (int i = 1; i <= calls; i++) {
+            assertEquals("answer " + i, geminiService.getAnswer("warm-up " + i));
+        }
+    }
+
+    private void awaitIdleLimiter() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (limiter.inFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, limiter.inFlight());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int request = requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        try {
+            Thread.sleep(delays.getOrDefault(request, FAST_MS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = ("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"answer " + request + "\"}]}}]}")
+                .getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(statuses.getOrDefault(request, 200), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // The client cancelled this request and closed the connection
+        } finally {
+            exchange.close();
+        }
+    }
+}
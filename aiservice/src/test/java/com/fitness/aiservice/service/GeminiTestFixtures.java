@@ -0,0 +1,33 @@
+package com.fitness.aiservice.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Gemini client setup shared by the tests that run it against a local stub.
+ */
+final class GeminiTestFixtures {
+
+    private GeminiTestFixtures() {
+    }
+
+    /**
+     * A limiter allowing four concurrent requests with budgets that never run out in a test.
+     */
+    static GeminiConcurrencyLimiter limiter(MeterRegistry meterRegistry) {
+        return new GeminiConcurrencyLimiter(meterRegistry, 4, 1, 4, 0.5, 10_000L, 1_000L, 1_000.0, 1_000_000.0);
+    }
+
+    /**
+     * A Gemini client sending its requests to the stub.
+     */
+    static GeminiService geminiService(HttpServer stub, GeminiConcurrencyLimiter limiter, MeterRegistry meterRegistry) {
+        GeminiService geminiService = new GeminiService(WebClient.builder(), limiter, meterRegistry, 1_000, 10_000);
+        ReflectionTestUtils.setField(geminiService, "geminiApiUrl",
+                "http://localhost:" + stub.getAddress().getPort() + "/v1beta/models/gemini:generateContent");
+        ReflectionTestUtils.setField(geminiService, "geminiApiKey", "test");
+        return geminiService;
+    }
+}
@@ -0,0 +1,140 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the consumer counts {@link ListenerAutoscaler} computes: the total for the backlog, and
+ * how it is split between the live and backfill lanes.
+ */
+class ListenerAutoscalerTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private GeminiConcurrencyLimiter limiter;
+    private ListenerAutoscaler autoscaler;
+    private Thread waiter;
+
+    @BeforeEach
+    void createAutoscaler() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new GeminiConcurrencyLimiter(meterRegistry, 1, 1, 1, 0.5, 10_000L, 10_000L, 1_000.0, 1_000_000.0);
+        autoscaler = new ListenerAutoscaler(new RabbitListenerEndpointRegistry(), null, meterRegistry,
+                new RecommendationBatcher(null, meterRegistry), limiter);
+        ReflectionTestUtils.setField(autoscaler, "minConsumers", 1);
+        ReflectionTestUtils.setField(autoscaler, "maxConsumers", 8);
+        ReflectionTestUtils.setField(autoscaler, "targetDrainSeconds", 10.0);
+        ReflectionTestUtils.setField(autoscaler, "minPrefetch", 1);
+        ReflectionTestUtils.setField(autoscaler, "maxPrefetch", 20);
+        ReflectionTestUtils.setField(autoscaler, "prefetchWindowMs", 2_000L);
+        ReflectionTestUtils.setField(autoscaler, "liveWeight", 4);
+        ReflectionTestUtils.setField(autoscaler, "backfillWeight", 1);
+        ReflectionTestUtils.setField(autoscaler, "liveReserve", 1);
+    }
+
+    @AfterEach
+    void stopWaiter() throws InterruptedException {
+        if (waiter != null) {
+            waiter.interrupt();
+            waiter.join();
+        }
+    }
+
+    @Test
+    void scalesToDrainTheBacklogWithinMaxConsumers() {
+        // 100 messages of 500 ms drain in 10 s with 5 consumers
+        assertEquals(5, autoscaler.desiredConsumers(2, 100, 500));
+        assertEquals(8, autoscaler.desiredConsumers(2, 10_000, 500));
+        // Scaling down goes one consumer at a time
+        assertEquals(5, autoscaler.desiredConsumers(6, 0, 500));
+    }
+
+    @Test
+    void splitsConsumersByWeightWhileBothLanesHaveBacklog() {
+        assertEquals(8, autoscaler.liveShare(10, 50, 50));
+        assertEquals(1, autoscaler.liveShare(10, 0, 50));
+        assertEquals(9, autoscaler.liveShare(10, 50, 0));
+    }
+
+    @Test
+    void lanesNeverGetMoreThanTheTotal() {
+        for (int reserve = 1; reserve <= 3; reserve++) {
+            ReflectionTestUtils.setField(autoscaler, "liveReserve", reserve);
+            for (int total = 1; total <= 10; total++) {
+                for (long[] depths : new long[][]{{0, 0}, {50, 0}, {0, 50}, {50, 50}, {1, 1_000}}) {
+                    int live = autoscaler.liveShare(total, depths[0], depths[1]);
+                    int backfill = total - live;
+                    String scenario = "reserve " + reserve + ", total " + total + ", depths " + depths[0] + "/" + depths[1];
+                    assertTrue(live >= Math.min(total, reserve), scenario);
+                    assertTrue(backfill >= 0, scenario);
+                    if (total > reserve) {
+                        assertTrue(backfill >= 1, scenario);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void singleConsumerLeavesNothingForBackfill() {
+        ReflectionTestUtils.setField(autoscaler, "maxConsumers", 1);
+
+        int total = autoscaler.desiredConsumers(1, 500, 1_000);
+        int live = autoscaler.liveShare(total, 100, 400);
+
+        // Giving backfill Math.max(1, total - live) would run two consumers with max-consumers at one
+        assertEquals(1, total);
+        assertEquals(1, live);
+        assertEquals(0, total - live);
+    }
+
+    @Test
+    void saturatedLimiterCapsBothLanesAtItsLimit() throws Exception {
+        saturate();
+
+        int total = autoscaler.desiredConsumers(4, 500, 1_000);
+        int live = autoscaler.liveShare(total, 100, 400);
+
+        assertEquals(1, limiter.limit());
+        assertEquals(1, total);
+        assertEquals(1, live + (total - live));
+    }
+
+    @Test
+    void sizesPrefetchToTheWindow() {
+        assertEquals(1, autoscaler.desiredPrefetch(0));
+        assertEquals(4, autoscaler.desiredPrefetch(500));
+        assertEquals(20, autoscaler.desiredPrefetch(10));
+        assertEquals(1, autoscaler.desiredPrefetch(5_000));
+    }
+
+    /**
+     * Takes the limiter's only slot and leaves a second caller queued behind it.
+     */
+    private void saturate() throws Exception {
+        limiter.acquire("prompt");
+        waiter = new Thread(() -> {
+            try {
+                limiter.acquire("prompt");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Timed out waiting; the test is over by then
+            }
+        });
+        waiter.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!limiter.isSaturated() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(limiter.isSaturated());
+    }
+}
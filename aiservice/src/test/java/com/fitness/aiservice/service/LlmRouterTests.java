@@ -0,0 +1,193 @@
+package com.fitness.aiservice.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs {@link LlmRouter} against two local stubs: a fast model server speaking the OpenAI API and a
+ * slower endpoint speaking the Gemini API.
+ */
+class LlmRouterTests {
+
+    private static final long LOCAL_MS = 20;
+    private static final long REMOTE_MS = 250;
+    /** Tokens every stub reports per request */
+    private static final long TOTAL_TOKENS = 1_000;
+
+    private Stub local;
+    private Stub remote;
+    private SimpleMeterRegistry meterRegistry;
+    private MockEnvironment environment;
+
+    @BeforeEach
+    void startStubs() throws IOException {
+        local = new Stub("local", LlmApi.OPENAI, LOCAL_MS);
+        remote = new Stub("remote", LlmApi.GEMINI, REMOTE_MS);
+        meterRegistry = new SimpleMeterRegistry();
+        environment = new MockEnvironment()
+                .withProperty("ai.router.provider.local.api", "openai")
+                .withProperty("ai.router.provider.local.url", local.url() + "/v1/chat/completions")
+                .withProperty("ai.router.provider.local.model", "llama3")
+                .withProperty("ai.router.provider.local.cost-per-million-tokens", "2.0")
+                .withProperty("ai.router.provider.remote.api", "gemini")
+                .withProperty("ai.router.provider.remote.url", remote.url() + "/v1beta/models/gemini:generateContent")
+                .withProperty("ai.router.provider.remote.api-key", "test")
+                .withProperty("ai.router.provider.remote.cost-per-million-tokens", "0.1");
+    }
+
+    @AfterEach
+    void stopStubs() {
+        local.server.stop(0);
+        remote.server.stop(0);
+    }
+
+    @Test
+    void fastestPolicyMovesToTheFasterProvider() {
+        LlmRouter router = router(LlmRouter.Policy.FASTEST, "remote", "local");
+
+        // Each provider is measured once, then the faster one takes every request
+        for (int i = 0; i < 10; i++) {
+            String answer = router.getAnswer("prompt " + i, String::new).value();
+            assertEquals(i == 0 ? "answer from remote" : "answer from local", answer);
+        }
+        assertEquals(1, remote.requests.get());
+        assertEquals(9, local.requests.get());
+    }
+
+    @Test
+    void cheapestPolicyKeepsToTheSla() {
+        LlmRouter router = router(LlmRouter.Policy.CHEAPEST_WITHIN_SLA, "local", "remote");
+        ReflectionTestUtils.setField(router, "slaMs", 1_000L);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("answer from remote", router.getAnswer("prompt " + i, String::new).value());
+        }
+        assertEquals(0, local.requests.get());
+
+        // The cheap provider averages above the tighter SLA, so the fast one takes over
+        ReflectionTestUtils.setField(router, "slaMs", 100L);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("answer from local", router.getAnswer("prompt " + i, String::new).value());
+        }
+        assertEquals(5, remote.requests.get());
+        assertEquals(5 * TOTAL_TOKENS * 0.1 / 1_000_000,
+                meterRegistry.get("ai.router.cost").tag("provider", "remote").counter().count(), 1e-9);
+        assertEquals(5 * TOTAL_TOKENS * 2.0 / 1_000_000,
+                meterRegistry.get("ai.router.cost").tag("provider", "local").counter().count(), 1e-9);
+    }
+
+    @Test
+    void failoverSkipsAFailingProvider() {
+        LlmRouter router = router(LlmRouter.Policy.FAILOVER, "local", "remote");
+        local.status = 500;
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals("answer from remote", router.getAnswer("prompt " + i, String::new).value());
+        }
+        // Four failures push the error rate past 0.5, after which the local provider goes last
+        assertEquals(4, local.requests.get());
+        assertEquals(8, remote.requests.get());
+        assertEquals(4.0, meterRegistry.get("ai.router.requests")
+                .tags("provider", "local", "outcome", "failure").counter().count());
+
+        local.status = 200;
+        ReflectionTestUtils.setField(router, "cooldownMs", 0L);
+        assertEquals("answer from local", router.getAnswer("prompt", String::new).value());
+    }
+
+    @Test
+    void failoverDoesNotExplore() {
+        LlmRouter router = router(LlmRouter.Policy.FAILOVER, "local", "remote");
+        ReflectionTestUtils.setField(router, "exploreRate", 1.0);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("answer from local", router.getAnswer("prompt " + i, String::new).value());
+        }
+        assertEquals(0, remote.requests.get());
+    }
+
+    private LlmRouter router(LlmRouter.Policy policy, String... providers) {
+        LlmRouter router = new LlmRouter(null, WebClient.builder(), environment, meterRegistry);
+        ReflectionTestUtils.setField(router, "providerNames", List.of(providers));
+        ReflectionTestUtils.setField(router, "policy", policy);
+        ReflectionTestUtils.setField(router, "slaMs", 10_000L);
+        ReflectionTestUtils.setField(router, "maxAttempts", 2);
+        ReflectionTestUtils.setField(router, "maxErrorRate", 0.5);
+        ReflectionTestUtils.setField(router, "cooldownMs", 60_000L);
+        ReflectionTestUtils.setField(router, "exploreRate", 0.0);
+        ReflectionTestUtils.setField(router, "connectTimeoutMs", 1_000);
+        ReflectionTestUtils.setField(router, "readTimeoutMs", 10_000L);
+        router.init();
+        return router;
+    }
+
+    /**
+     * Stub provider answering every request after a fixed delay.
+     */
+    private static final class Stub {
+
+        private final String name;
+        private final LlmApi api;
+        private final long delayMs;
+        private final HttpServer server;
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile int status = 200;
+
+        Stub(String name, LlmApi api, long delayMs) throws IOException {
+            this.name = name;
+            this.api = api;
+            this.delayMs = delayMs;
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        String url() {
+            return "http://localhost:" + server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String text = "answer from " + name;
+            String json = api == LlmApi.OPENAI
+                    ? "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"" + text + "\"}}],"
+                    + "\"usage\":{\"prompt_tokens\":400,\"total_tokens\":" + TOTAL_TOKENS + "}}"
+                    : "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}]}}],"
+                    + "\"usageMetadata\":{\"promptTokenCount\":400,\"totalTokenCount\":" + TOTAL_TOKENS + "}}";
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            try {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Checks the feature key {@link RecommendationCache} stores analyses under.
+ */
+class RecommendationCacheTests {
+
+    private RecommendationCache cache;
+
+    @BeforeEach
+    void createCache() {
+        cache = new RecommendationCache(null, null, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "durationBucketMinutes", 5);
+        ReflectionTestUtils.setField(cache, "caloriesBucket", 50);
+        ReflectionTestUtils.setField(cache, "defaultMetricBucket", 10.0);
+        ReflectionTestUtils.setField(cache, "metricBucketSettings", List.of("averageHeartRate=5", "distance=1"));
+        ReflectionTestUtils.setField(cache, "keyMetrics", Set.of("terrain"));
+        cache.init();
+    }
+
+    @Test
+    void bucketsNumericMetricsInNameOrder() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("distance", 8.7);
+        metrics.put("averageHeartRate", 152);
+        metrics.put("cadence", 171.5);
+
+        assertEquals("RUNNING|d45|c500|averageHeartRate=150|cadence=170|distance=8",
+                cache.key(activity(47, 512, metrics)));
+    }
+
+    @Test
+    void leavesOutNonNumericMetricsThatAreNotListed() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("distance", 8.2);
+        first.put("notes", "Felt great, new shoes");
+        first.put("route", List.of(Map.of("lat", 52.1, "lon", 4.3)));
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("distance", 8.9);
+        second.put("notes", "Windy");
+        second.put("startedAt", "2026-10-19T07:00:00");
+
+        assertEquals("RUNNING|d45|c500|distance=8", cache.key(activity(45, 500, first)));
+        assertEquals(cache.key(activity(45, 500, first)), cache.key(activity(49, 540, second)));
+    }
+
+    @Test
+    void keepsListedNonNumericMetrics() {
+        Map<String, Object> trail = new LinkedHashMap<>();
+        trail.put("terrain", "trail");
+        Map<String, Object> road = new LinkedHashMap<>();
+        road.put("terrain", "road");
+
+        assertEquals("RUNNING|d45|c500|terrain=trail", cache.key(activity(45, 500, trail)));
+        assertNotEquals(cache.key(activity(45, 500, trail)), cache.key(activity(45, 500, road)));
+    }
+
+    @Test
+    void marksMissingValues() {
+        assertEquals("RUNNING|d-|c-", cache.key(activity(null, null, null)));
+    }
+
+    private static Activity activity(Integer duration, Integer calories, Map<String, Object> metrics) {
+        Activity activity = new Activity();
+        activity.setType(ActivityType.RUNNING);
+        activity.setDuration(duration);
+        activity.setCaloriesBurned(calories);
+        activity.setAdditionalMetrics(metrics);
+        return activity;
+    }
+}
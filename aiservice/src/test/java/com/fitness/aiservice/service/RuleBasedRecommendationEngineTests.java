@@ -0,0 +1,119 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityType;
+import com.fitness.aiservice.model.Recommendation;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the rules of {@link RuleBasedRecommendationEngine}: heart rate zones, pace in each unit,
+ * and activities with missing metrics or type.
+ */
+class RuleBasedRecommendationEngineTests {
+
+    private final RuleBasedRecommendationEngine engine = new RuleBasedRecommendationEngine();
+
+    @Test
+    void estimatesHeartRateZonesFromTheAverage() {
+        assertZone(100, 1, "very light");
+        assertZone(125, 2, "easy aerobic");
+        assertZone(140, 3, "moderate");
+        assertZone(160, 4, "hard");
+        assertZone(180, 5, "maximal");
+    }
+
+    @Test
+    void recommendsRecoveryFirstAfterAHardSession() {
+        Recommendation recommendation = engine.recommend(activity(ActivityType.RUNNING, 40, 480,
+                Map.of("averageHeartRate", 165, "maxHeartRate", 184)));
+
+        assertEquals("Easy run: 30 minutes at a conversational pace", recommendation.getSuggestions().get(0));
+        assertTrue(recommendation.getSafety().stream().anyMatch(point -> point.contains("close to its maximum")));
+    }
+
+    @Test
+    void reportsPaceInTheUnitOfTheActivityType() {
+        assertPace(ActivityType.RUNNING, 30, 6, "Average pace 5:00 min/km, a steady pace for a run.");
+        assertPace(ActivityType.RUNNING, 25, 6, "Average pace 4:10 min/km, a fast pace for a run.");
+        assertPace(ActivityType.WALKING, 70, 5, "Average pace 14:00 min/km, an easy pace for a walk.");
+        assertPace(ActivityType.CYCLING, 60, 30, "Average speed 30.0 km/h, a fast pace for a ride.");
+        assertPace(ActivityType.CYCLING, 60, 15, "Average speed 15.0 km/h, an easy pace for a ride.");
+        assertPace(ActivityType.SWIMMING, 20, 1, "Average pace 2:00 min/100 m, a steady pace for a swim.");
+        assertPace(ActivityType.YOGA, 45, 2, "Pace does not apply to a yoga session;");
+    }
+
+    @Test
+    void readsNumericMetricsGivenAsStrings() {
+        Recommendation recommendation = engine.recommend(activity(ActivityType.RUNNING, 30, 360,
+                Map.of("avgHeartRate", "140", "distance", "6")));
+
+        assertTrue(recommendation.getRecommendation().contains("(zone 3, moderate effort)"));
+        assertTrue(recommendation.getRecommendation().contains("Average pace 5:00 min/km"));
+    }
+
+    @Test
+    void handlesMissingMetricsDurationAndCalories() {
+        Recommendation recommendation = engine.recommend(activity(ActivityType.RUNNING, null, null, null));
+
+        String analysis = recommendation.getRecommendation();
+        assertTrue(analysis.contains("Overall:A run without a recorded duration."));
+        assertTrue(analysis.contains("Pace:No distance recorded, so pace could not be assessed."));
+        assertTrue(analysis.contains("Heart Rate:No heart rate recorded."));
+        assertTrue(analysis.contains("Calories:No calories recorded."));
+        assertTrue(recommendation.getImprovements().stream().anyMatch(point -> point.startsWith("Tracking:")));
+    }
+
+    @Test
+    void ignoresNonPositiveAndUnparseableMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("averageHeartRate", 0);
+        metrics.put("maxHeartRate", "fast");
+        metrics.put("distance", -3.0);
+        Recommendation recommendation = engine.recommend(activity(ActivityType.RUNNING, 30, 300, metrics));
+
+        assertTrue(recommendation.getRecommendation().contains("Heart Rate:No heart rate recorded."));
+        assertTrue(recommendation.getRecommendation().contains("Pace:No distance recorded"));
+    }
+
+    @Test
+    void treatsAMissingTypeAsOther() {
+        Recommendation recommendation = engine.recommend(activity(null, 30, 200, Map.of()));
+
+        assertEquals("OTHER", recommendation.getActivityType());
+        assertTrue(recommendation.getRecommendation().startsWith("Overall:Solid workout of 30 minutes"));
+        assertFalse(recommendation.getSuggestions().isEmpty());
+    }
+
+    private void assertZone(int averageHeartRate, int zone, String effort) {
+        Recommendation recommendation = engine.recommend(activity(ActivityType.RUNNING, 30, 300,
+                Map.of("averageHeartRate", averageHeartRate)));
+        String analysis = recommendation.getRecommendation();
+        assertTrue(analysis.contains("(zone " + zone + ", " + effort + " effort)"), analysis);
+        assertTrue(analysis.contains("Overall:Solid run of 30 minutes at a" + (zone == 2 ? "n " : " ") + effort + " effort."),
+                analysis);
+    }
+
+    private void assertPace(ActivityType type, int duration, double distance, String expected) {
+        String analysis = engine.recommend(activity(type, duration, null, Map.of("distance", distance)))
+                .getRecommendation();
+        assertTrue(analysis.contains("Pace:" + expected), analysis);
+    }
+
+    private static Activity activity(ActivityType type, Integer duration, Integer calories, Map<String, Object> metrics) {
+        Activity activity = new Activity();
+        activity.setId("activity-1");
+        activity.setUserId("user-1");
+        activity.setType(type);
+        activity.setDuration(duration);
+        activity.setCaloriesBurned(calories);
+        activity.setAdditionalMetrics(metrics);
+        return activity;
+    }
+}
@@ -0,0 +1,74 @@
+package com.fitness.benchmarks;
+
+import com.fitness.activityservice.config.ActivityEventMessageConverter;
+import com.fitness.activityservice.model.Activity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of activity events with the legacy JSON converter
+ * versus the compact Smile converter. Encoded sizes are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActivityEventCodecBenchmark {
+
+    private final MessageConverter json = new Jackson2JsonMessageConverter();
+    private final MessageConverter smile = new ActivityEventMessageConverter();
+
+    private Activity activity;
+    private Message jsonMessage;
+    private Message smileMessage;
+
+    @Setup
+    public void setUp() {
+        activity = Fixtures.activity();
+        jsonMessage = withInferredType(json.toMessage(activity, new MessageProperties()));
+        smileMessage = withInferredType(smile.toMessage(activity, new MessageProperties()));
+        System.out.printf("%nEncoded activity event: json=%d bytes (+ __TypeId__ header), smile=%d bytes%n",
+                jsonMessage.getBody().length, smileMessage.getBody().length);
+    }
+
+    @Benchmark
+    public Message encodeJson() {
+        return json.toMessage(activity, new MessageProperties());
+    }
+
+    @Benchmark
+    public Message encodeSmile() {
+        return smile.toMessage(activity, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object decodeJson() {
+        return json.fromMessage(jsonMessage);
+    }
+
+    @Benchmark
+    public Object decodeSmile() {
+        return smile.fromMessage(smileMessage);
+    }
+
+    private static Message withInferredType(Message message) {
+        message.getMessageProperties().setInferredArgumentType(Activity.class);
+        return message;
+    }
+}
@@ -0,0 +1,73 @@
+package com.fitness.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost and payload size of the activity list endpoint with all fields
+ * versus the list-view fieldset (fields=id,type,duration,caloriesBurned,startTime).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActivityListPayloadBenchmark {
+
+    @Param({"20", "200"})
+    private int activities;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private List<ActivityResponse> full;
+    private List<ActivityResponse> sparse;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        full = new ArrayList<>(activities);
+        sparse = new ArrayList<>(activities);
+        for (int i = 0; i < activities; i++) {
+            Activity activity = Fixtures.activity();
+            full.add(Fixtures.response(activity));
+
+            ActivityResponse listView = new ActivityResponse();
+            listView.setId(activity.getId());
+            listView.setType(activity.getType());
+            listView.setDuration(activity.getDuration());
+            listView.setCaloriesBurned(activity.getCaloriesBurned());
+            listView.setStartTime(activity.getStartTime());
+            sparse.add(listView);
+        }
+        System.out.printf("%nActivity list payload for %d activities: full=%d bytes, list fields=%d bytes%n",
+                activities, objectMapper.writeValueAsBytes(full).length, objectMapper.writeValueAsBytes(sparse).length);
+    }
+
+    @Benchmark
+    public byte[] serializeFull() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(full);
+    }
+
+    @Benchmark
+    public byte[] serializeListFields() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(sparse);
+    }
+}
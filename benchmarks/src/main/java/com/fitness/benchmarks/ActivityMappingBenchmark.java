@@ -0,0 +1,92 @@
+package com.fitness.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.service.ActivityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request work of the activity endpoints outside MongoDB: entity to DTO mapping
+ * and Jackson (de)serialization of the request and response bodies, using the same
+ * date settings as Spring Boot's ObjectMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ActivityMappingBenchmark {
+
+    private static final MethodHandle MAP_TO_RESPONSE =
+            Fixtures.privateMethod(ActivityService.class, "mapToResponse", Activity.class);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private ActivityService activityService;
+    private Activity activity;
+    private ActivityResponse response;
+    private ActivityRequest request;
+    private byte[] requestJson;
+    private byte[] responseJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        activityService = Fixtures.withoutDependencies(ActivityService.class);
+        activity = Fixtures.activity();
+        response = Fixtures.response(activity);
+        request = new ActivityRequest();
+        request.setUserId(activity.getUserId());
+        request.setType(activity.getType());
+        request.setDuration(activity.getDuration());
+        request.setCaloriesBurned(activity.getCaloriesBurned());
+        request.setStartTime(activity.getStartTime());
+        request.setAdditionalMetrics(activity.getAdditionalMetrics());
+        requestJson = objectMapper.writeValueAsBytes(request);
+        responseJson = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ActivityResponse mapToResponse() throws Throwable {
+        return (ActivityResponse) MAP_TO_RESPONSE.invoke(activityService, activity);
+    }
+
+    @Benchmark
+    public ActivityRequest deserializeRequest() throws Exception {
+        return objectMapper.readValue(requestJson, ActivityRequest.class);
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() throws Exception {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public ActivityResponse deserializeResponse() throws Exception {
+        return objectMapper.readValue(responseJson, ActivityResponse.class);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
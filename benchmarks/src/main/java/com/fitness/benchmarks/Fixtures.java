@@ -0,0 +1,78 @@
+package com.fitness.benchmarks;
+
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Representative payloads shared by the benchmarks, and access to the private
+ * service methods they measure.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static Activity activity() {
+        LocalDateTime start = LocalDateTime.of(2025, 6, 1, 7, 30);
+        return Activity.builder()
+                .id("665b1f0c2a9e4b3d8c7f1a2b")
+                .userId("8f14e45f-ceea-467f-a0e6-1b2c3d4e5f60")
+                .type(ActivityType.RUNNING)
+                .duration(45)
+                .caloriesBurned(520)
+                .startTime(start)
+                .additionalMetrics(Map.of(
+                        "distance", 8.4,
+                        "averageHeartRate", 152,
+                        "maxHeartRate", 178,
+                        "averagePace", "5:21",
+                        "elevationGain", 64))
+                .createdAt(start.plusMinutes(50))
+                .updatedAt(start.plusMinutes(50))
+                .build();
+    }
+
+    static ActivityResponse response(Activity activity) {
+        ActivityResponse response = new ActivityResponse();
+        response.setId(activity.getId());
+        response.setUserId(activity.getUserId());
+        response.setType(activity.getType());
+        response.setDuration(activity.getDuration());
+        response.setCaloriesBurned(activity.getCaloriesBurned());
+        response.setStartTime(activity.getStartTime());
+        response.setAdditionalMetrics(activity.getAdditionalMetrics());
+        response.setCreatedAt(activity.getCreatedAt());
+        response.setUpdatedAt(activity.getUpdatedAt());
+        return response;
+    }
+
+    /**
+     * Instantiates a service through its constructor with every dependency set to null,
+     * for benchmarks that only call methods which do not use them.
+     */
+    static <T> T withoutDependencies(Class<T> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructors()[0];
+            return type.cast(constructor.newInstance(new Object[constructor.getParameterCount()]));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+        }
+    }
+
+    static MethodHandle privateMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup()).unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot access " + type.getName() + "." + name, e);
+        }
+    }
+}
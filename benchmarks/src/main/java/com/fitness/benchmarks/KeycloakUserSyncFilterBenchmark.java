@@ -0,0 +1,113 @@
+package com.fitness.benchmarks;
+
+import com.fitness.gateway.KeycloakUserSyncFilter;
+import com.fitness.gateway.user.RegisterRequest;
+import com.fitness.gateway.user.UserService;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.lang.invoke.MethodHandle;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost the gateway adds to every authenticated request: parsing the bearer token's claims
+ * and running the whole user sync filter with a user service that always finds the user.
+ * Subtract {@link #exchange()} from {@link #filter()} for the filter's own cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class KeycloakUserSyncFilterBenchmark {
+
+    private static final MethodHandle GET_USER_DETAILS =
+            Fixtures.privateMethod(KeycloakUserSyncFilter.class, "getUserDetails", String.class);
+
+    private final WebFilterChain chain = exchange -> Mono.empty();
+
+    private KeycloakUserSyncFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException, JOSEException {
+        filter = new KeycloakUserSyncFilter(new ExistingUserService());
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer("http://localhost:8181/realms/fitness-oauth2")
+                .subject("8f14e45f-ceea-467f-a0e6-1b2c3d4e5f60")
+                .audience("account")
+                .issueTime(Date.from(Instant.parse("2025-06-01T07:00:00Z")))
+                .expirationTime(Date.from(Instant.parse("2025-06-01T07:05:00Z")))
+                .claim("email", "jane.runner@example.com")
+                .claim("given_name", "Jane")
+                .claim("family_name", "Runner")
+                .claim("preferred_username", "jane.runner")
+                .claim("scope", "openid profile email")
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("benchmark").build(), claims);
+        jwt.sign(new RSASSASigner((RSAPrivateKey) generator.generateKeyPair().getPrivate()));
+        authorization = "Bearer " + jwt.serialize();
+    }
+
+    @Benchmark
+    public RegisterRequest getUserDetails() throws Throwable {
+        return (RegisterRequest) GET_USER_DETAILS.invoke(filter, authorization);
+    }
+
+    /**
+     * Baseline for {@link #filter()}: building the mock exchange alone.
+     */
+    @Benchmark
+    public MockServerWebExchange exchange() {
+        return newExchange();
+    }
+
+    @Benchmark
+    public Void filter() {
+        return filter.filter(newExchange(), chain).block();
+    }
+
+    private MockServerWebExchange newExchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/activities")
+                .header("Authorization", authorization));
+    }
+
+    private static class ExistingUserService extends UserService {
+
+        ExistingUserService() {
+            super(null);
+        }
+
+        @Override
+        public Mono<Boolean> validateUser(String userId) {
+            return Mono.just(true);
+        }
+    }
+}
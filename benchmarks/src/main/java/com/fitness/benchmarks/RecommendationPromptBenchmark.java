@@ -0,0 +1,87 @@
+package com.fitness.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityType;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.service.ActivityAIService;
+import com.fitness.aiservice.service.LlmApi;
+import com.fitness.aiservice.service.RecommendationCache;
+import com.fitness.aiservice.service.RecommendationParser;
+import com.fitness.aiservice.service.RuleBasedRecommendationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU work of the recommendation pipeline around the Gemini call: building the prompt
+ * for an activity and reading a recorded Gemini response into a Recommendation with
+ * {@link LlmApi#readAnswer} and {@link RecommendationParser}, compared with answering
+ * in-process with the rule-based engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RecommendationPromptBenchmark {
+
+    private static final MethodHandle CREATE_PROMPT =
+            Fixtures.privateMethod(ActivityAIService.class, "createPromptForActivity", Activity.class);
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final RecommendationParser parser = new RecommendationParser(jsonFactory);
+    private ActivityAIService activityAIService;
+    private Activity activity;
+    private byte[] geminiResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        // A cache that is not initialized stays disabled, so only parsing is measured
+        activityAIService = new ActivityAIService(null, null, new RecommendationCache(null, null, null),
+                new RuleBasedRecommendationEngine());
+        com.fitness.activityservice.model.Activity source = Fixtures.activity();
+        activity = new Activity();
+        activity.setId(source.getId());
+        activity.setUserId(source.getUserId());
+        activity.setType(ActivityType.valueOf(source.getType().name()));
+        activity.setDuration(source.getDuration());
+        activity.setCaloriesBurned(source.getCaloriesBurned());
+        activity.setStartTime(source.getStartTime());
+        activity.setAdditionalMetrics(source.getAdditionalMetrics());
+        activity.setCreatedAt(source.getCreatedAt());
+        activity.setUpdatedAt(source.getUpdatedAt());
+        try (InputStream in = RecommendationPromptBenchmark.class.getResourceAsStream("/gemini-response.json")) {
+            geminiResponse = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public String createPromptForActivity() throws Throwable {
+        return (String) CREATE_PROMPT.invoke(activityAIService, activity);
+    }
+
+    @Benchmark
+    public Recommendation readGeminiResponse() throws IOException {
+        return LlmApi.GEMINI.readAnswer(jsonFactory, new ByteArrayInputStream(geminiResponse), parser::parse).value();
+    }
+
+    @Benchmark
+    public Recommendation localRecommendation() {
+        return activityAIService.localRecommendation(activity);
+    }
+}
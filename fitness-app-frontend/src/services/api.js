@@ -22,5 +22,6 @@ api.interceptors.request.use((config) =>{
 } );
 
 export const getActivities = () => api.get('/activities');
+export const getActivityChanges = (since) => api.get('/activities/changes', { params: since ? { since } : {} });
 export const addActivity = (activity) => api.post('/activities', activity);
 export const getActivityDetail = (id) => api.get(`/recommendations/activity/${id}`);
\ No newline at end of file
@@ -4,22 +4,33 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Security configuration class for the API Gateway.
  * Configures security rules, CORS, and JWT authentication.
+ * Operational endpoints require the Keycloak realm role {@code admin}.
  */
 @Slf4j
 @Configuration
@@ -41,6 +52,14 @@ public class SecurityConfig {
     private static final List<String> ALLOWED_HEADERS =
             Arrays.asList("Authorization", "Content-Type", "X-User-ID");
 
+    private static final String ADMIN_ROLE = "ADMIN";
+    /** Endpoints acting on all users' data, reserved for operators */
+    private static final String[] ADMIN_PATHS = {
+            "/api/activities/stats/rebuild",
+            "/api/activities/exports/**",
+            "/api/recommendations/parking-lot/**"
+    };
+
     @Bean
     public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
         return http
@@ -49,10 +68,12 @@ public class SecurityConfig {
                 .authorizeExchange(exchanges -> exchanges
                         .pathMatchers("/actuator/**").permitAll()
                         .pathMatchers("/api/auth/**").permitAll()
+                        .pathMatchers(ADMIN_PATHS).hasRole(ADMIN_ROLE)
                         .anyExchange().authenticated()
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2
-                        .jwt(jwt -> jwt.jwtDecoder(reactiveJwtDecoder()))
+                        .jwt(jwt -> jwt.jwtDecoder(reactiveJwtDecoder())
+                                .jwtAuthenticationConverter(jwtAuthenticationConverter()))
                 )
                 .build();
     }
@@ -67,6 +88,23 @@ public class SecurityConfig {
                 .build();
     }
 
+    /**
+     * Maps the Keycloak realm roles in the realm_access.roles claim to ROLE_ authorities.
+     */
+    private Converter<Jwt, Mono<AbstractAuthenticationToken>> jwtAuthenticationConverter() {
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
+            Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");
+            if (realmAccess == null || !(realmAccess.get("roles") instanceof Collection<?> roles)) {
+                return List.of();
+            }
+            return roles.stream()
+                    .<GrantedAuthority>map(role -> new SimpleGrantedAuthority("ROLE_" + role.toString().toUpperCase()))
+                    .toList();
+        });
+        return new ReactiveJwtAuthenticationConverterAdapter(converter);
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration config = new CorsConfiguration();
@@ -0,0 +1,77 @@
+package com.fitness.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP client for the gateway, recording the latency and status of every scenario request.
+ */
+class GatewayClient {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final String baseUrl;
+    private final LoadMetrics metrics;
+
+    GatewayClient(String baseUrl, LoadMetrics metrics) {
+        this.baseUrl = baseUrl;
+        this.metrics = metrics;
+    }
+
+    HttpResponse<String> get(String operation, String path, String token) {
+        return send(operation, request(path, token).GET().build());
+    }
+
+    HttpResponse<String> post(String operation, String path, String token, String json) {
+        return post(operation, path, token, json, null);
+    }
+
+    /**
+     * Posts JSON with an optional Prefer header, e.g. "respond-async".
+     */
+    HttpResponse<String> post(String operation, String path, String token, String json, String prefer) {
+        HttpRequest.Builder builder = request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (prefer != null) {
+            builder.header("Prefer", prefer);
+        }
+        return send(operation, builder.build());
+    }
+
+    /**
+     * Sends a request that is not part of the measured scenario.
+     */
+    HttpResponse<String> probe(String path, String token) throws IOException, InterruptedException {
+        return httpClient.send(request(path, token).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private HttpResponse<String> send(String operation, HttpRequest request) {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            metrics.record(operation, started, response.statusCode());
+            return response;
+        } catch (IOException e) {
+            metrics.record(operation, started, 0);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.fitness.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and error counts per scenario operation, plus the queue depth,
+ * activity-to-recommendation lag and asynchronous ingest commit lag observed while the load ran.
+ */
+class LoadMetrics {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Map<String, Recorder> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> accumulated = new ConcurrentHashMap<>();
+    private final Recorder recommendationLag = new Recorder(TimeUnit.MINUTES.toMillis(30), 3);
+    private final Recorder ingestLag = new Recorder(TimeUnit.MINUTES.toMillis(5), 3);
+    private final Histogram queueDepth = new Histogram(3);
+
+    void record(String operation, long startNanos, int status) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        latencies.computeIfAbsent(operation, key -> new Recorder(MAX_TRACKABLE_MICROS, 3))
+                .recordValue(Math.min(micros, MAX_TRACKABLE_MICROS));
+        statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        if (status < 200 || status >= 400) {
+            errors.computeIfAbsent(operation, key -> new LongAdder()).increment();
+        }
+    }
+
+    void recordRecommendationLag(long millis) {
+        recommendationLag.recordValue(Math.min(millis, TimeUnit.MINUTES.toMillis(30)));
+    }
+
+    void recordIngestLag(long millis) {
+        ingestLag.recordValue(Math.min(millis, TimeUnit.MINUTES.toMillis(5)));
+    }
+
+    synchronized void recordQueueDepth(long depth) {
+        queueDepth.recordValue(depth);
+    }
+
+    /**
+     * Summarizes everything recorded so far; the measured window is used for throughput.
+     */
+    synchronized Map<String, Object> summary(double windowSeconds) {
+        Map<String, Object> operations = new TreeMap<>();
+        long totalRequests = 0;
+        long totalErrors = 0;
+        for (Map.Entry<String, Recorder> entry : latencies.entrySet()) {
+            Histogram histogram = accumulated.computeIfAbsent(entry.getKey(), key -> new Histogram(MAX_TRACKABLE_MICROS, 3));
+            histogram.add(entry.getValue().getIntervalHistogram());
+            long operationErrors = errors.getOrDefault(entry.getKey(), new LongAdder()).sum();
+            totalRequests += histogram.getTotalCount();
+            totalErrors += operationErrors;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requests", histogram.getTotalCount());
+            stats.put("errors", operationErrors);
+            stats.put("throughputPerSecond", round(histogram.getTotalCount() / windowSeconds));
+            stats.put("latencyMs", percentiles(histogram, 1000.0));
+            operations.put(entry.getKey(), stats);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("windowSeconds", round(windowSeconds));
+        summary.put("requests", totalRequests);
+        summary.put("errors", totalErrors);
+        summary.put("throughputPerSecond", round(totalRequests / windowSeconds));
+        summary.put("operations", operations);
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+        summary.put("statusCodes", statusCounts);
+
+        Histogram lag = recommendationLag.getIntervalHistogram();
+        Map<String, Object> lagStats = new LinkedHashMap<>();
+        lagStats.put("samples", lag.getTotalCount());
+        lagStats.put("latencyMs", percentiles(lag, 1.0));
+        summary.put("recommendationLag", lagStats);
+
+        Histogram ingest = ingestLag.getIntervalHistogram();
+        Map<String, Object> ingestStats = new LinkedHashMap<>();
+        ingestStats.put("samples", ingest.getTotalCount());
+        ingestStats.put("storedPerSecond", round(ingest.getTotalCount() / windowSeconds));
+        ingestStats.put("latencyMs", percentiles(ingest, 1.0));
+        summary.put("ingestLag", ingestStats);
+
+        Map<String, Object> depthStats = new LinkedHashMap<>();
+        depthStats.put("samples", queueDepth.getTotalCount());
+        depthStats.put("mean", round(queueDepth.getMean()));
+        depthStats.put("p95", queueDepth.getValueAtPercentile(95));
+        depthStats.put("max", queueDepth.getMaxValue());
+        summary.put("queueDepth", depthStats);
+        return summary;
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram, double unitsPerMilli) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        if (histogram.getTotalCount() == 0) {
+            return values;
+        }
+        values.put("p50", round(histogram.getValueAtPercentile(50) / unitsPerMilli));
+        values.put("p90", round(histogram.getValueAtPercentile(90) / unitsPerMilli));
+        values.put("p95", round(histogram.getValueAtPercentile(95) / unitsPerMilli));
+        values.put("p99", round(histogram.getValueAtPercentile(99) / unitsPerMilli));
+        values.put("p999", round(histogram.getValueAtPercentile(99.9) / unitsPerMilli));
+        values.put("max", round(histogram.getMaxValue() / unitsPerMilli));
+        return values;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,261 @@
+package com.fitness.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fitness.loadtest.standin.EmbeddedBroker;
+import com.fitness.loadtest.standin.EmbeddedMongo;
+import com.fitness.loadtest.standin.EmbeddedPostgresDatabase;
+import com.fitness.loadtest.standin.StubGeminiServer;
+import com.fitness.loadtest.standin.StubOidcIssuer;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Starts the stand-ins and the five services, drives virtual users through the gateway
+ * and writes a throughput, latency and queue lag report.
+ *
+ * <p>Everything runs on localhost without network access: RabbitMQ, MongoDB and PostgreSQL
+ * are replaced by in-process or bundled servers, Keycloak by a stub issuer whose tokens the
+ * gateway verifies through its JWK set, and Gemini by a stub with configurable latency.
+ * The services are the executable jars from each module's target directory, configured
+ * from configserver/src/main/resources/config with their connections pointed at the stand-ins.</p>
+ */
+public final class LoadTestMain {
+
+    private static final String QUEUE = "activity.queue";
+    private static final int EUREKA_PORT = 8761;
+    private static final int GATEWAY_PORT = 8080;
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Deque<AutoCloseable> resources = new ArrayDeque<>();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeAll(resources)));
+        try {
+            run(options, resources);
+        } finally {
+            closeAll(resources);
+        }
+        System.exit(0);
+    }
+
+    private static void run(LoadTestOptions options, Deque<AutoCloseable> resources) throws Exception {
+        log("Starting stand-ins");
+        int amqpPort = options.amqpPort() != null ? options.amqpPort() : LoadTestOptions.EMBEDDED_AMQP_PORT;
+        if (options.amqpPort() == null) {
+            EmbeddedBroker broker = new EmbeddedBroker(amqpPort);
+            broker.start();
+            resources.push(broker);
+        }
+        String mongoBase = options.mongoUri();
+        if (mongoBase == null) {
+            EmbeddedMongo mongo = new EmbeddedMongo(LoadTestOptions.EMBEDDED_MONGO_PORT);
+            mongo.start();
+            resources.push(mongo);
+            mongoBase = "mongodb://localhost:" + LoadTestOptions.EMBEDDED_MONGO_PORT;
+        }
+        String postgresUrl = options.postgresUrl();
+        if (postgresUrl == null) {
+            EmbeddedPostgresDatabase postgres = new EmbeddedPostgresDatabase(LoadTestOptions.EMBEDDED_POSTGRES_PORT);
+            postgres.start();
+            resources.push(postgres);
+            postgresUrl = postgres.jdbcUrl();
+        }
+        StubOidcIssuer issuer = new StubOidcIssuer(LoadTestOptions.OIDC_PORT);
+        issuer.start();
+        resources.push(issuer);
+        StubGeminiServer gemini = new StubGeminiServer(LoadTestOptions.GEMINI_PORT,
+                options.geminiLatencyMs(), options.geminiJitterMs(), options.geminiErrorRate());
+        gemini.start();
+        resources.push(gemini);
+
+        Path logs = Path.of("target", "logs").toAbsolutePath();
+        log("Starting services, logs in " + logs);
+        List<ServiceProcess> services = services(options, amqpPort, mongoBase, postgresUrl, issuer, gemini);
+        for (ServiceProcess service : services) {
+            service.start(logs, options.serviceHeap());
+            resources.push(service);
+        }
+        long startupTimeout = TimeUnit.SECONDS.toMillis(options.startupTimeoutSeconds());
+        for (ServiceProcess service : services) {
+            service.awaitPort(startupTimeout);
+            log(service.name() + " is listening");
+        }
+
+        LoadMetrics metrics = new LoadMetrics();
+        GatewayClient gateway = new GatewayClient("http://localhost:" + GATEWAY_PORT, metrics);
+        awaitRoutable(gateway, issuer, startupTimeout);
+
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        RecommendationLagTracker lagTracker = new RecommendationLagTracker(gateway, metrics, options.lagSampleRate());
+        ScheduledExecutorService monitors = Executors.newScheduledThreadPool(2);
+        resources.push(monitors::shutdownNow);
+        Connection amqp = amqpConnection(amqpPort);
+        resources.push(amqp);
+        monitors.scheduleWithFixedDelay(() -> sampleQueueDepth(amqp, metrics), 1, 1, TimeUnit.SECONDS);
+        monitors.scheduleWithFixedDelay(lagTracker::poll, 250, 250, TimeUnit.MILLISECONDS);
+
+        log("Running " + options.users() + " users for " + options.durationSeconds() + " s");
+        long started = System.currentTimeMillis();
+        long deadline = started + TimeUnit.SECONDS.toMillis(options.durationSeconds());
+        long rampUpStep = options.users() > 1
+                ? TimeUnit.SECONDS.toMillis(options.rampUpSeconds()) / (options.users() - 1) : 0;
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < options.users(); i++) {
+                String userId = UUID.randomUUID().toString();
+                String token = issuer.mint(userId, "loadtest-" + i + "-" + userId.substring(0, 8) + "@example.com",
+                        "Load", "User" + i, Duration.ofSeconds(options.durationSeconds()).plusMinutes(30));
+                users.submit(new VirtualUser(userId, token, gateway, metrics, lagTracker, objectMapper,
+                        options.thinkTimeMs(), options.asyncIngest(), deadline));
+                Thread.sleep(rampUpStep);
+            }
+        }
+        double windowSeconds = (System.currentTimeMillis() - started) / 1000.0;
+
+        log("Load finished, waiting up to " + options.drainSeconds() + " s for sampled recommendations");
+        long drainDeadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(options.drainSeconds());
+        while (lagTracker.pendingCount() > 0 && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(500);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options.toString());
+        report.putAll(metrics.summary(windowSeconds));
+        report.put("recommendationsPending", lagTracker.pendingCount());
+        report.put("geminiRequests", gemini.requests());
+        report.put("geminiFailures", gemini.failures());
+        Files.createDirectories(options.report().toAbsolutePath().getParent());
+        String json = objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        Files.writeString(options.report(), json);
+        System.out.println(json);
+        log("Report written to " + options.report().toAbsolutePath());
+    }
+
+    private static List<ServiceProcess> services(LoadTestOptions options, int amqpPort, String mongoBase,
+                                                 String postgresUrl, StubOidcIssuer issuer, StubGeminiServer gemini)
+            throws Exception {
+        Path repository = options.repository();
+        List<ServiceProcess> services = new ArrayList<>();
+        services.add(new ServiceProcess("eureka", ServiceProcess.executableJar(repository, "eureka"), EUREKA_PORT, List.of(
+                "--spring.application.name=eureka",
+                "--server.port=" + EUREKA_PORT,
+                "--eureka.client.register-with-eureka=false",
+                "--eureka.client.fetch-registry=false",
+                "--eureka.server.enable-self-preservation=false")));
+        services.add(new ServiceProcess("user-service", ServiceProcess.executableJar(repository, "userservice"), 8081,
+                withCommon(repository, "user-service",
+                        "--spring.datasource.url=" + postgresUrl,
+                        "--spring.datasource.username=" + options.postgresUser(),
+                        "--spring.datasource.password=" + options.postgresPassword(),
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN")));
+        services.add(new ServiceProcess("activity-service", ServiceProcess.executableJar(repository, "activityservice"), 8082,
+                withCommon(repository, "activity-service",
+                        "--spring.data.mongodb.uri=" + mongoBase + "/fitness_activity",
+                        "--spring.rabbitmq.port=" + amqpPort,
+                        "--activity.archive.enabled=false",
+                        "--activity.export.cron=-")));
+        services.add(new ServiceProcess("ai-service", ServiceProcess.executableJar(repository, "aiservice"), 8083,
+                withCommon(repository, "ai-service",
+                        "--spring.data.mongodb.uri=" + mongoBase + "/fitnessrecommendation",
+                        "--spring.rabbitmq.port=" + amqpPort,
+                        "--gemini.api.url=" + gemini.url(),
+                        "--gemini.api.key=loadtest",
+                        "--ai.batching.enabled=" + options.aiBatching())));
+        services.add(new ServiceProcess("api-gateway", ServiceProcess.executableJar(repository, "gateway"), GATEWAY_PORT,
+                withCommon(repository, "api-gateway",
+                        "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + issuer.issuer(),
+                        "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + issuer.jwkSetUri())));
+        return services;
+    }
+
+    private static List<String> withCommon(Path repository, String application, String... arguments) {
+        List<String> all = new ArrayList<>();
+        all.add("--spring.application.name=" + application);
+        all.add("--spring.config.import=optional:file:"
+                + repository.resolve("configserver/src/main/resources/config/" + application + ".yml"));
+        all.add("--spring.cloud.config.enabled=false");
+        all.add("--spring.cloud.config.import-check.enabled=false");
+        all.add("--eureka.client.serviceUrl.defaultZone=http://localhost:" + EUREKA_PORT + "/eureka/");
+        all.add("--eureka.client.registry-fetch-interval-seconds=5");
+        all.add("--eureka.instance.lease-renewal-interval-in-seconds=5");
+        all.add("--logging.level.root=WARN");
+        all.addAll(List.of(arguments));
+        return all;
+    }
+
+    /**
+     * Waits until the gateway resolves the downstream services through Eureka and
+     * accepts a stub token, which also registers a warm-up user.
+     */
+    private static void awaitRoutable(GatewayClient gateway, StubOidcIssuer issuer, long timeoutMs) throws Exception {
+        String userId = UUID.randomUUID().toString();
+        String token = issuer.mint(userId, "warmup@example.com", "Warm", "Up", Duration.ofHours(1));
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        int status = -1;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                status = gateway.probe("/api/activities", token).statusCode();
+                if (status == 200) {
+                    log("Gateway routes requests");
+                    return;
+                }
+            } catch (Exception e) {
+                status = -1;
+            }
+            Thread.sleep(1000);
+        }
+        throw new TimeoutException("Gateway did not route /api/activities within " + timeoutMs + " ms, last status " + status);
+    }
+
+    private static Connection amqpConnection(int port) throws Exception {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost("localhost");
+        factory.setPort(port);
+        factory.setUsername("guest");
+        factory.setPassword("guest");
+        return factory.newConnection("loadtest-monitor");
+    }
+
+    private static void sampleQueueDepth(Connection amqp, LoadMetrics metrics) {
+        // A failed passive declare closes its channel, so every sample uses a fresh one
+        try (var channel = amqp.createChannel()) {
+            metrics.recordQueueDepth(channel.queueDeclarePassive(QUEUE).getMessageCount());
+        } catch (Exception e) {
+            // The queue is declared by the services; skip samples until it exists
+        }
+    }
+
+    private static void closeAll(Deque<AutoCloseable> resources) {
+        while (!resources.isEmpty()) {
+            try {
+                resources.pop().close();
+            } catch (Exception e) {
+                log("Failed to stop a stand-in: " + e);
+            }
+        }
+    }
+
+    private static void log(String message) {
+        System.out.printf("[loadtest] %s%n", message);
+    }
+}
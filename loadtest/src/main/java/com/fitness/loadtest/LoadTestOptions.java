@@ -0,0 +1,81 @@
+package com.fitness.loadtest;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line options of the load test, given as --name=value.
+ * Setting --mongo-uri, --amqp-port or --postgres-url uses an existing server instead of the stand-in.
+ */
+record LoadTestOptions(
+        Path repository,
+        int users,
+        int durationSeconds,
+        int rampUpSeconds,
+        long thinkTimeMs,
+        long geminiLatencyMs,
+        long geminiJitterMs,
+        double geminiErrorRate,
+        boolean aiBatching,
+        boolean asyncIngest,
+        double lagSampleRate,
+        int drainSeconds,
+        String mongoUri,
+        Integer amqpPort,
+        String postgresUrl,
+        String postgresUser,
+        String postgresPassword,
+        String serviceHeap,
+        int startupTimeoutSeconds,
+        Path report) {
+
+    static final int EMBEDDED_AMQP_PORT = 35672;
+    static final int EMBEDDED_MONGO_PORT = 37017;
+    static final int EMBEDDED_POSTGRES_PORT = 35432;
+    static final int OIDC_PORT = 38181;
+    static final int GEMINI_PORT = 38090;
+
+    private static final Set<String> KNOWN = Set.of("repository", "users", "duration-seconds",
+            "ramp-up-seconds", "think-time-ms", "gemini-latency-ms", "gemini-jitter-ms", "gemini-error-rate",
+            "ai-batching", "async-ingest", "lag-sample-rate", "drain-seconds", "mongo-uri", "amqp-port", "postgres-url",
+            "postgres-user", "postgres-password", "service-heap", "startup-timeout-seconds", "report");
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                Path.of(values.getOrDefault("repository", "..")).toAbsolutePath().normalize(),
+                Integer.parseInt(values.getOrDefault("users", "50")),
+                Integer.parseInt(values.getOrDefault("duration-seconds", "120")),
+                Integer.parseInt(values.getOrDefault("ramp-up-seconds", "20")),
+                Long.parseLong(values.getOrDefault("think-time-ms", "500")),
+                Long.parseLong(values.getOrDefault("gemini-latency-ms", "800")),
+                Long.parseLong(values.getOrDefault("gemini-jitter-ms", "400")),
+                Double.parseDouble(values.getOrDefault("gemini-error-rate", "0")),
+                Boolean.parseBoolean(values.getOrDefault("ai-batching", "false")),
+                Boolean.parseBoolean(values.getOrDefault("async-ingest", "false")),
+                Double.parseDouble(values.getOrDefault("lag-sample-rate", "0.1")),
+                Integer.parseInt(values.getOrDefault("drain-seconds", "60")),
+                values.get("mongo-uri"),
+                values.containsKey("amqp-port") ? Integer.valueOf(values.get("amqp-port")) : null,
+                values.get("postgres-url"),
+                values.getOrDefault("postgres-user", "postgres"),
+                values.getOrDefault("postgres-password", "postgres"),
+                values.getOrDefault("service-heap", "512m"),
+                Integer.parseInt(values.getOrDefault("startup-timeout-seconds", "180")),
+                Path.of(values.getOrDefault("report", "target/loadtest-report.json")));
+        values.keySet().removeAll(KNOWN);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        return options;
+    }
+}
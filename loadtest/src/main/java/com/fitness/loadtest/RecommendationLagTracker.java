@@ -0,0 +1,62 @@
+package com.fitness.loadtest;
+
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures how long a sample of tracked activities takes to get a recommendation,
+ * i.e. the time spent in the outbox, the queue and the AI service, by polling the
+ * recommendation endpoint until it answers.
+ */
+class RecommendationLagTracker {
+
+    private final GatewayClient gateway;
+    private final LoadMetrics metrics;
+    private final double sampleRate;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    RecommendationLagTracker(GatewayClient gateway, LoadMetrics metrics, double sampleRate) {
+        this.gateway = gateway;
+        this.metrics = metrics;
+        this.sampleRate = sampleRate;
+    }
+
+    void offer(String activityId, String token, long postedAtMillis) {
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            pending.put(activityId, new Pending(token, postedAtMillis));
+        }
+    }
+
+    /**
+     * Checks every pending activity once.
+     */
+    void poll() {
+        Iterator<Map.Entry<String, Pending>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Pending> entry = entries.next();
+            try {
+                HttpResponse<String> response = gateway.probe(
+                        "/api/recommendations/activity/" + entry.getKey(), entry.getValue().token());
+                if (response.statusCode() == 200) {
+                    metrics.recordRecommendationLag(System.currentTimeMillis() - entry.getValue().postedAtMillis());
+                    entries.remove();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Retried on the next poll
+            }
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private record Pending(String token, long postedAtMillis) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.fitness.loadtest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * One service started from its executable jar as a child JVM, logging to its own file.
+ */
+class ServiceProcess implements AutoCloseable {
+
+    private final String name;
+    private final Path jar;
+    private final int port;
+    private final List<String> arguments;
+    private Process process;
+
+    ServiceProcess(String name, Path jar, int port, List<String> arguments) {
+        this.name = name;
+        this.jar = jar;
+        this.port = port;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Finds a module's executable jar: the "exec" classifier if the module keeps a plain jar, else the main jar.
+     */
+    static Path executableJar(Path repository, String module) throws IOException {
+        Path target = repository.resolve(module).resolve("target");
+        if (!Files.isDirectory(target)) {
+            throw new IllegalStateException("No build output for " + module + ", run mvn package in " + module);
+        }
+        try (Stream<Path> jars = Files.list(target)) {
+            List<Path> candidates = jars
+                    .filter(path -> path.getFileName().toString().endsWith(".jar"))
+                    .filter(path -> !path.getFileName().toString().endsWith(".original"))
+                    .sorted()
+                    .toList();
+            return candidates.stream()
+                    .filter(path -> path.getFileName().toString().endsWith("-exec.jar"))
+                    .findFirst()
+                    .or(() -> candidates.stream().findFirst())
+                    .orElseThrow(() -> new IllegalStateException("No jar in " + target));
+        }
+    }
+
+    void start(Path logDirectory, String heap) throws IOException {
+        Files.createDirectories(logDirectory);
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-Xms" + heap);
+        command.add("-Xmx" + heap);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(arguments);
+        process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logDirectory.resolve(name + ".log").toFile())
+                .start();
+    }
+
+    void awaitPort(long timeoutMs) throws InterruptedException, TimeoutException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(name + " exited with code " + process.exitValue() + ", see its log");
+            }
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 500);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(500);
+            }
+        }
+        throw new TimeoutException(name + " did not open port " + port + " within " + timeoutMs + " ms");
+    }
+
+    String name() {
+        return name;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (process == null) {
+            return;
+        }
+        process.destroy();
+        if (!process.waitFor(20, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.fitness.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One simulated app user. The first request registers the user through the gateway's
+ * user sync; after that the user mixes logging workouts with browsing activities, stats
+ * and recommendations, pausing for an exponentially distributed think time in between.
+ * With async ingest the user posts workouts with "Prefer: respond-async" and polls the
+ * ingest status until the group commit has stored them.
+ */
+class VirtualUser implements Runnable {
+
+    private static final String[] TYPES = {"RUNNING", "WALKING", "CYCLING", "SWIMMING", "WEIGHT_TRAINING",
+            "YOGA", "HIIT", "CARDIO", "STRETCHING", "OTHER"};
+
+    // Cumulative weights: track 35%, list 25%, get 10%, stats 10%, recommendations 20%
+    private static final int TRACK = 35;
+    private static final int LIST = 60;
+    private static final int GET = 70;
+    private static final int STATS = 80;
+
+    private static final long INGEST_POLL_MS = 20;
+    private static final long INGEST_TIMEOUT_MS = 30_000;
+
+    private final String userId;
+    private final String token;
+    private final GatewayClient gateway;
+    private final LoadMetrics metrics;
+    private final RecommendationLagTracker lagTracker;
+    private final ObjectMapper objectMapper;
+    private final long thinkTimeMs;
+    private final boolean asyncIngest;
+    private final long deadlineMillis;
+    private String lastActivityId;
+
+    VirtualUser(String userId, String token, GatewayClient gateway, LoadMetrics metrics, RecommendationLagTracker lagTracker,
+                ObjectMapper objectMapper, long thinkTimeMs, boolean asyncIngest, long deadlineMillis) {
+        this.userId = userId;
+        this.token = token;
+        this.gateway = gateway;
+        this.metrics = metrics;
+        this.lagTracker = lagTracker;
+        this.objectMapper = objectMapper;
+        this.thinkTimeMs = thinkTimeMs;
+        this.asyncIngest = asyncIngest;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    @Override
+    public void run() {
+        gateway.get("register", "/api/activities", token);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.currentTimeMillis() < deadlineMillis && !Thread.currentThread().isInterrupted()) {
+            int roll = random.nextInt(100);
+            if (roll < TRACK) {
+                trackActivity(random);
+            } else if (roll < LIST) {
+                gateway.get("listActivities", "/api/activities", token);
+            } else if (roll < GET && lastActivityId != null) {
+                gateway.get("getActivity", "/api/activities/" + lastActivityId, token);
+            } else if (roll < STATS) {
+                LocalDate today = LocalDate.now();
+                gateway.get("stats", "/api/activities/stats?granularity=week&from=" + today.minusWeeks(8)
+                        + "&to=" + today, token);
+            } else {
+                gateway.get("recommendations", "/api/recommendations/user/" + userId, token);
+            }
+            think(random);
+        }
+    }
+
+    private void trackActivity(ThreadLocalRandom random) {
+        int duration = random.nextInt(15, 121);
+        Map<String, Object> additionalMetrics = new LinkedHashMap<>();
+        additionalMetrics.put("averageHeartRate", random.nextInt(95, 175));
+        additionalMetrics.put("maxHeartRate", random.nextInt(150, 195));
+        additionalMetrics.put("distance", Math.round(random.nextDouble(1, 25) * 10) / 10.0);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("type", TYPES[random.nextInt(TYPES.length)]);
+        body.put("duration", duration);
+        body.put("caloriesBurned", duration * random.nextInt(5, 13));
+        body.put("startTime", LocalDateTime.now().minusHours(random.nextInt(1, 72)).truncatedTo(ChronoUnit.SECONDS).toString());
+        body.put("additionalMetrics", additionalMetrics);
+        try {
+            long postedAt = System.currentTimeMillis();
+            String json = objectMapper.writeValueAsString(body);
+            if (asyncIngest) {
+                HttpResponse<String> response = gateway.post("trackActivityAsync", "/api/activities", token, json,
+                        "respond-async");
+                if (response != null && response.statusCode() == 202) {
+                    String activityId = objectMapper.readTree(response.body()).path("activityId").asText(null);
+                    if (activityId != null && awaitStored(activityId, postedAt)) {
+                        lastActivityId = activityId;
+                        lagTracker.offer(activityId, token, postedAt);
+                    }
+                }
+                return;
+            }
+            HttpResponse<String> response = gateway.post("trackActivity", "/api/activities", token, json);
+            if (response != null && response.statusCode() == 200) {
+                JsonNode activity = objectMapper.readTree(response.body());
+                lastActivityId = activity.path("id").asText(null);
+                if (lastActivityId != null) {
+                    lagTracker.offer(lastActivityId, token, postedAt);
+                }
+            }
+        } catch (Exception e) {
+            // Already counted as an error by the gateway client
+        }
+    }
+
+    /**
+     * Polls the ingest status until the activity is stored, recording the time from the POST.
+     */
+    private boolean awaitStored(String activityId, long postedAt) throws Exception {
+        long giveUpAt = postedAt + INGEST_TIMEOUT_MS;
+        while (System.currentTimeMillis() < giveUpAt) {
+            HttpResponse<String> response = gateway.get("ingestStatus", "/api/activities/ingest/" + activityId, token);
+            if (response != null && response.statusCode() == 200) {
+                String status = objectMapper.readTree(response.body()).path("status").asText();
+                if ("STORED".equals(status)) {
+                    metrics.recordIngestLag(System.currentTimeMillis() - postedAt);
+                    return true;
+                }
+                if ("FAILED".equals(status)) {
+                    return false;
+                }
+            }
+            Thread.sleep(INGEST_POLL_MS);
+        }
+        return false;
+    }
+
+    private void think(ThreadLocalRandom random) {
+        if (thinkTimeMs <= 0) {
+            return;
+        }
+        long pause = (long) (-thinkTimeMs * Math.log(1 - random.nextDouble()));
+        try {
+            Thread.sleep(Math.min(pause, thinkTimeMs * 10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.fitness.loadtest.standin;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.SystemConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-process AMQP 0-9-1 broker (Apache Qpid Broker-J) with an in-memory store,
+ * accepting guest/guest on the default virtual host.
+ */
+public class EmbeddedBroker implements AutoCloseable {
+
+    private final SystemLauncher launcher = new SystemLauncher();
+    private final int port;
+
+    public EmbeddedBroker(int port) {
+        this.port = port;
+    }
+
+    public void start() throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(SystemConfig.TYPE, "Memory");
+        attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION,
+                EmbeddedBroker.class.getResource("/qpid-broker.json").toExternalForm());
+        attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+        attributes.put(SystemConfig.CONTEXT, Map.of(
+                "qpid.amqp_port", String.valueOf(port),
+                "qpid.work_dir", System.getProperty("java.io.tmpdir") + "/fitness-loadtest-broker"));
+        launcher.startup(attributes);
+    }
+
+    public int port() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+}
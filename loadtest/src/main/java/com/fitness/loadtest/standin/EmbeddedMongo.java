@@ -0,0 +1,48 @@
+package com.fitness.loadtest.standin;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.MongoVersion;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+import java.util.List;
+
+/**
+ * In-process MongoDB wire protocol server backed by memory. It covers the CRUD, index and
+ * bulk operations the services use on the request path; features it lacks (time series
+ * collections, $unionWith) are only reached by background jobs a load test does not trigger.
+ */
+public class EmbeddedMongo implements AutoCloseable {
+
+    // The current Java driver refuses servers older than 4.2 (wire version 8)
+    private static final MongoVersion MONGO_4_2 = new MongoVersion() {
+        @Override
+        public List<Integer> getVersionArray() {
+            return List.of(4, 2, 0);
+        }
+
+        @Override
+        public int getWireVersion() {
+            return 8;
+        }
+    };
+
+    private final MongoServer server = new MongoServer(new MemoryBackend().version(MONGO_4_2));
+    private final int port;
+
+    public EmbeddedMongo(int port) {
+        this.port = port;
+    }
+
+    public void start() {
+        server.bind("localhost", port);
+    }
+
+    public String uri(String database) {
+        return "mongodb://localhost:" + port + "/" + database;
+    }
+
+    @Override
+    public void close() {
+        server.shutdownNow();
+    }
+}
@@ -0,0 +1,33 @@
+package com.fitness.loadtest.standin;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+
+/**
+ * PostgreSQL started from binaries shipped as a Maven artifact, so no installation is needed.
+ */
+public class EmbeddedPostgresDatabase implements AutoCloseable {
+
+    private final int port;
+    private EmbeddedPostgres postgres;
+
+    public EmbeddedPostgresDatabase(int port) {
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        postgres = EmbeddedPostgres.builder().setPort(port).start();
+    }
+
+    public String jdbcUrl() {
+        return postgres.getJdbcUrl("postgres", "postgres");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+}
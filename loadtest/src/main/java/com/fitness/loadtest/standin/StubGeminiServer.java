@@ -0,0 +1,113 @@
+package com.fitness.loadtest.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the Gemini generateContent endpoint. Every POST is answered with a recorded
+ * response after a latency of {@code latencyMs} plus a uniformly random {@code jitterMs},
+ * and an optional share of requests fails with 429 like a rate-limited API. Prompts listing
+ * several "Activity ID:" lines get an array with the recorded analysis once per activity.
+ */
+public class StubGeminiServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private static final Pattern ACTIVITY_ID = Pattern.compile("Activity ID: (\\S+)");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final byte[] response;
+    private final JsonNode analysis;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public StubGeminiServer(int port, long latencyMs, long jitterMs, double errorRate) throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        try (InputStream in = StubGeminiServer.class.getResourceAsStream("/gemini-response.json")) {
+            response = in.readAllBytes();
+        }
+        String text = objectMapper.readTree(response).at("/candidates/0/content/parts/0/text").asText();
+        analysis = objectMapper.readTree(text.replace("```json", "").replace("```", ""));
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        // Latency is simulated by sleeping, which only parks a virtual thread
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v1beta/models/gemini-2.0-flash:generateContent";
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        byte[] body = responseFor(exchange.getRequestBody().readAllBytes());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            Thread.sleep(latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (random.nextDouble() < errorRate) {
+            failures.incrementAndGet();
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private byte[] responseFor(byte[] request) throws IOException {
+        String prompt = objectMapper.readTree(request).at("/contents/0/parts/0/text").asText();
+        Matcher matcher = ACTIVITY_ID.matcher(prompt);
+        ArrayNode analyses = objectMapper.createArrayNode();
+        while (matcher.find()) {
+            analyses.add(((ObjectNode) analysis.deepCopy()).put("activityId", matcher.group(1)));
+        }
+        if (analyses.isEmpty()) {
+            return response;
+        }
+        ObjectNode batched = (ObjectNode) objectMapper.readTree(response);
+        ((ObjectNode) batched.at("/candidates/0/content/parts/0"))
+                .put("text", "```json\n" + objectMapper.writeValueAsString(analyses) + "\n```");
+        return objectMapper.writeValueAsBytes(batched);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,103 @@
+package com.fitness.loadtest.standin;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for the Keycloak realm: publishes a JWK set and discovery document under the
+ * realm's paths and mints RS256 access tokens with the claims the gateway reads.
+ */
+public class StubOidcIssuer implements AutoCloseable {
+
+    private static final String REALM_PATH = "/realms/fitness-oauth2";
+
+    private final HttpServer server;
+    private final RSAKey signingKey;
+
+    public StubOidcIssuer(int port) throws IOException, JOSEException {
+        signingKey = new RSAKeyGenerator(2048).keyID("loadtest").generate();
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext(REALM_PATH + "/protocol/openid-connect/certs",
+                exchange -> respond(exchange, new JWKSet(signingKey.toPublicJWK()).toString()));
+        server.createContext(REALM_PATH + "/.well-known/openid-configuration",
+                exchange -> respond(exchange, """
+                        {"issuer":"%s","jwks_uri":"%s","id_token_signing_alg_values_supported":["RS256"],\
+                        "subject_types_supported":["public"],"response_types_supported":["code"]}"""
+                        .formatted(issuer(), jwkSetUri())));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String issuer() {
+        return "http://localhost:" + server.getAddress().getPort() + REALM_PATH;
+    }
+
+    public String jwkSetUri() {
+        return issuer() + "/protocol/openid-connect/certs";
+    }
+
+    /**
+     * Mints an access token for a load-test user, valid for the given time.
+     */
+    public String mint(String subject, String email, String firstName, String lastName, Duration validity) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuer())
+                .subject(subject)
+                .audience("account")
+                .jwtID(UUID.randomUUID().toString())
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(validity)))
+                .claim("typ", "Bearer")
+                .claim("azp", "oauth2-pkce-client")
+                .claim("scope", "openid profile email")
+                .claim("email", email)
+                .claim("given_name", firstName)
+                .claim("family_name", lastName)
+                .claim("preferred_username", email)
+                .build();
+        try {
+            SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(), claims);
+            jwt.sign(new RSASSASigner(signingKey));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Cannot sign token", e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}